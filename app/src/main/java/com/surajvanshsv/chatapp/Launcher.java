@@ -12,11 +12,18 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.Observer;
 
+import com.google.firebase.auth.FirebaseAuth;
+import com.surajvanshsv.chatapp.Repository.GroupStream;
+import com.surajvanshsv.chatapp.Repository.Repository;
+import com.surajvanshsv.chatapp.model.GroupEvent;
+import com.surajvanshsv.chatapp.views.GroupsActvity;
 import com.surajvanshsv.chatapp.views.LoginActivity;
 
 public class Launcher extends AppCompatActivity {
@@ -27,9 +34,22 @@ public class Launcher extends AppCompatActivity {
     private View neonUnderline, dot1, dot2, dot3;
     private View bgCircle1, bgCircle2;
 
+    // The splash stays until every warm-up has finished, but at least the
+    // minimum and at most the maximum display time
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private int pendingWarmUps;
+    private boolean minTimeElapsed;
+    private boolean navigating;
+    private Repository repository;
+    private boolean holdsGroupStream;
+    // a restored session goes straight to the groups
+    private boolean signedIn;
+    private FirebaseAuth.AuthStateListener authListener;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.mark(StartupTrace.LAUNCHER_CREATED);
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_launcher);
 
@@ -39,11 +59,13 @@ public class Launcher extends AppCompatActivity {
         // Start animations
         startAnimations();
 
-        // Navigate to login after 3 seconds (increased for animation viewing)
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            // Fade out animation before transition
-            fadeOutAndNavigate();
-        }, 3000);
+        // Warm up Firebase, the auth session and the group list while the splash shows
+        startWarmUp();
+        handler.postDelayed(() -> {
+            minTimeElapsed = true;
+            navigateWhenReady();
+        }, getResources().getInteger(R.integer.splash_min_display_ms));
+        handler.postDelayed(this::navigate, getResources().getInteger(R.integer.splash_max_display_ms));
 
         ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
             Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
@@ -52,6 +74,88 @@ public class Launcher extends AppCompatActivity {
         });
     }
 
+    private void startWarmUp() {
+        // Firebase, the local cache and the outbox
+        repository = Repository.getInstance(this);
+        StartupTrace.mark(StartupTrace.REPOSITORY_READY);
+
+        // The session is restored from disk in the background, the first
+        // callback tells whether someone is signed in
+        pendingWarmUps++;
+        authListener = new FirebaseAuth.AuthStateListener() {
+            boolean known;
+
+            @Override
+            public void onAuthStateChanged(@NonNull FirebaseAuth auth) {
+                if (known) {
+                    return;
+                }
+                known = true;
+                StartupTrace.mark(StartupTrace.AUTH_READY);
+                signedIn = auth.getCurrentUser() != null;
+                if (signedIn) {
+                    warmUpGroups();
+                }
+                warmUpDone();
+            }
+        };
+        FirebaseAuth.getInstance().addAuthStateListener(authListener);
+    }
+
+    // Released in onDestroy, the registry keeps the stream for its grace
+    // period so the groups screen finds it loaded
+    private void warmUpGroups() {
+        pendingWarmUps++;
+        holdsGroupStream = true;
+        GroupStream groupStream = repository.acquireGroupStream();
+        boolean[] ready = {false};
+        Runnable onReady = () -> {
+            if (!ready[0]) {
+                ready[0] = true;
+                StartupTrace.mark(StartupTrace.GROUPS_READY);
+                warmUpDone();
+            }
+        };
+        // cached or remote, the first groups are enough
+        groupStream.getEvents().observe(this, new Observer<GroupEvent>() {
+            @Override
+            public void onChanged(GroupEvent event) {
+                onReady.run();
+            }
+        });
+        // an empty directory has no events, its answer is enough too
+        groupStream.getDirectoryLoaded().observe(this, new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean loaded) {
+                if (loaded) {
+                    onReady.run();
+                }
+            }
+        });
+    }
+
+    private void warmUpDone() {
+        pendingWarmUps--;
+        navigateWhenReady();
+    }
+
+    private void navigateWhenReady() {
+        if (minTimeElapsed && pendingWarmUps == 0) {
+            navigate();
+        }
+    }
+
+    private void navigate() {
+        if (navigating) {
+            return;
+        }
+        navigating = true;
+        handler.removeCallbacksAndMessages(null);
+        StartupTrace.mark(StartupTrace.LAUNCHER_DONE);
+        // Fade out animation before transition
+        fadeOutAndNavigate();
+    }
+
     private void initViews() {
         logoContainer = findViewById(R.id.logo_container);
         loadingContainer = findViewById(R.id.loading_container);
@@ -179,7 +283,8 @@ public class Launcher extends AppCompatActivity {
                 .alpha(0f)
                 .setDuration(500)
                 .withEndAction(() -> {
-                    startActivity(new Intent(Launcher.this, LoginActivity.class));
+                    startActivity(new Intent(Launcher.this,
+                            signedIn ? GroupsActvity.class : LoginActivity.class));
                     finish();
                     // Custom transition
                     overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
@@ -195,4 +300,15 @@ public class Launcher extends AppCompatActivity {
         if (bgCircle2 != null) bgCircle2.clearAnimation();
         if (appLogo != null) appLogo.clearAnimation();
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacksAndMessages(null);
+        FirebaseAuth.getInstance().removeAuthStateListener(authListener);
+        if (holdsGroupStream) {
+            repository.releaseGroupStream();
+            holdsGroupStream = false;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.SnapshotCodec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One-shot move of the groups still stored flat into day buckets (see MessageLayout).
+// One client moves a group at a time: it takes the group's lock in the
+// directory with a transaction, others skip the group and look again on
+// their next launch. The flat node is read CHUNK_SIZE messages at a time from
+// its start, and each chunk is one atomic update that writes the messages to
+// their buckets and deletes exactly those flat keys. A message an older
+// client writes flat meanwhile is never deleted unread, it comes with a later
+// chunk. Once the flat node is empty the group is marked and unlocked.
+// Interrupted runs lose nothing and pick up where they stopped.
+// Runs after sign-in until every group was handled once on this device, and
+// only with DAY_BUCKETS on. Main thread only.
+class DayBucketMigration {
+
+    private static final String TAG = "DayBucketMigration";
+    private static final String PREFS_NAME = "day_bucket_migration";
+    private static final String KEY_DONE = "done";
+
+    static final int CHUNK_SIZE = 500;
+    // groups/{groupName}/migrating -> { by, at }, the client moving the group
+    static final String LOCK_FIELD = "migrating";
+    // a lock not renewed for this long belongs to a client that went away
+    static final long LOCK_TIMEOUT_MS = 10 * 60_000;
+
+    private final DatabaseReference root;
+    private final SharedPreferences prefs;
+    // the signed-in user, holder of the locks this device takes
+    private String userId;
+    private boolean running;
+    // a group locked by someone else, this device is not done yet
+    private boolean skipped;
+
+    DayBucketMigration(DatabaseReference root, Context context) {
+        this.root = root;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    void runOnce(String userId) {
+        if (running || prefs.getBoolean(KEY_DONE, false)) {
+            return;
+        }
+        running = true;
+        this.userId = userId;
+        skipped = false;
+
+        root.child(Repository.GROUPS_NODE).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                List<String> flat = new ArrayList<>();
+                for (DataSnapshot group : snapshot.getChildren()) {
+                    Object layout = group.child(MessageLayout.LAYOUT_FIELD).getValue();
+                    if (!MessageLayout.LAYOUT_DAYS.equals(layout)) {
+                        flat.add(group.getKey());
+                    }
+                }
+                migrate(flat, 0);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                running = false;
+            }
+        });
+    }
+
+    private void migrate(List<String> groups, int next) {
+        if (next == groups.size()) {
+            running = false;
+            if (skipped) {
+                Log.i(TAG, "some groups are being moved by another client, looking again next launch");
+                return;
+            }
+            Log.i(TAG, "moved " + groups.size() + " groups into day buckets");
+            prefs.edit().putBoolean(KEY_DONE, true).apply();
+            return;
+        }
+        lock(groups, next);
+    }
+
+    private DatabaseReference lockOf(String groupName) {
+        return root.child(Repository.GROUPS_NODE).child(groupName).child(LOCK_FIELD);
+    }
+
+    private void lock(List<String> groups, int next) {
+        String groupName = groups.get(next);
+        lockOf(groupName).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                Object by = currentData.child("by").getValue();
+                Object at = currentData.child("at").getValue();
+                boolean free = by == null || userId.equals(by) || !(at instanceof Number)
+                        || System.currentTimeMillis() - ((Number) at).longValue() > LOCK_TIMEOUT_MS;
+                if (!free) {
+                    return Transaction.abort();
+                }
+                currentData.child("by").setValue(userId);
+                currentData.child("at").setValue(System.currentTimeMillis());
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed,
+                                   @Nullable DataSnapshot currentData) {
+                if (error != null) {
+                    running = false;
+                } else if (!committed) {
+                    skipped = true;
+                    migrate(groups, next + 1);
+                } else {
+                    copyChunk(groups, next);
+                }
+            }
+        });
+    }
+
+    // Always the oldest flat messages left, the ones moved before are gone
+    private void copyChunk(List<String> groups, int next) {
+        String groupName = groups.get(next);
+        root.child(groupName).orderByKey().limitToFirst(CHUNK_SIZE)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (!snapshot.hasChildren()) {
+                            finishGroup(groups, next);
+                            return;
+                        }
+
+                        List<ChatMessage> messages = new ArrayList<>();
+                        Map<String, Object> updates = new HashMap<>();
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            ChatMessage message = SnapshotCodec.decodeMessage(child.getKey(), child.getValue());
+                            if (message != null) {
+                                messages.add(message);
+                            } else {
+                                // moved as it is, left behind it would stop the loop
+                                updates.put(MessageLayout.messagePath(groupName, child.getKey()), child.getValue());
+                            }
+                            updates.put(groupName + "/" + child.getKey(), null);
+                        }
+                        MessageLayout.addBucketUpdates(updates, groupName, messages);
+                        // still ours, for another chunk's worth of time
+                        updates.put(Repository.GROUPS_NODE + "/" + groupName + "/" + LOCK_FIELD + "/at",
+                                System.currentTimeMillis());
+                        root.updateChildren(updates).addOnCompleteListener(task -> {
+                            if (task.isSuccessful()) {
+                                copyChunk(groups, next);
+                            } else {
+                                // tried again on the next launch, the lock times out
+                                running = false;
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        running = false;
+                    }
+                });
+    }
+
+    // The flat node is empty: marks the group as bucketed and releases the lock
+    private void finishGroup(List<String> groups, int next) {
+        String groupName = groups.get(next);
+        Map<String, Object> updates = new HashMap<>();
+        String entry = Repository.GROUPS_NODE + "/" + groupName + "/";
+        updates.put(entry + MessageLayout.LAYOUT_FIELD, MessageLayout.LAYOUT_DAYS);
+        updates.put(entry + LOCK_FIELD, null);
+        root.updateChildren(updates).addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                migrate(groups, next + 1);
+            } else {
+                running = false;
+            }
+        });
+    }
+}
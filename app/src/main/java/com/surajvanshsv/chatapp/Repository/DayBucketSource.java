@@ -0,0 +1,258 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import com.surajvanshsv.chatapp.model.DayBuckets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The bucketed layout, see MessageLayout. Pages are read from the newest days
+// backwards, or forwards from a key when dropped history is paged back in: the
+// day index says which days have messages and roughly how many, and only the
+// days needed to fill the page are read, all at once. The
+// tail follows the index from the newest message's day on and listens to the
+// newest day only, so every query covers one day however old the group is.
+// When a newer day appears the older day's listener goes, after one last read
+// of it so nothing that landed there meanwhile is missed.
+// Main thread only, like MessageStream.
+class DayBucketSource implements MessageSource {
+
+    // index entries read per lookup, a month of active days
+    static final int DAYS_PER_LOOKUP = 31;
+
+    private final DatabaseReference buckets;
+    private final DatabaseReference index;
+
+    private ChildEventListener tailListener;
+    private Query dayQuery;
+    private ChildEventListener dayListener;
+    private final Map<String, Query> dayTails = new HashMap<>();
+
+    DayBucketSource(DatabaseReference buckets, DatabaseReference index) {
+        this.buckets = buckets;
+        this.index = index;
+    }
+
+    @Override
+    public void loadPage(String beforeKey, int size, PageCallback callback) {
+        Query days = beforeKey == null
+                ? index.orderByKey()
+                : index.orderByKey().endAt(DayBuckets.bucketOf(beforeKey));
+        lookUpDays(days, beforeKey, false, size, new ArrayList<>(), callback);
+    }
+
+    @Override
+    public void loadPageAfter(String afterKey, int size, PageCallback callback) {
+        Query days = index.orderByKey().startAt(DayBuckets.bucketOf(afterKey));
+        lookUpDays(days, afterKey, true, size, new ArrayList<>(), callback);
+    }
+
+    // boundKey is excluded, forward pages go up from it and backward ones down
+    private void lookUpDays(Query days, String boundKey, boolean forward, int size, List<DataSnapshot> page,
+                            PageCallback callback) {
+        Query lookup = forward ? days.limitToFirst(DAYS_PER_LOOKUP) : days.limitToLast(DAYS_PER_LOOKUP);
+        lookup.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                List<DataSnapshot> found = new ArrayList<>();
+                for (DataSnapshot day : snapshot.getChildren()) {
+                    found.add(day);
+                }
+
+                // days nearest to the bound first, as many as their counts say are still missing
+                int missing = size - page.size();
+                int first = forward ? 0 : found.size();
+                int last = forward ? 0 : found.size();
+                long expected = 0;
+                while (expected < missing && (forward ? last < found.size() : first > 0)) {
+                    expected += forward ? count(found.get(last++)) : count(found.get(--first));
+                }
+                if (first == last) {
+                    callback.onPage(page);
+                    return;
+                }
+
+                List<String> toRead = new ArrayList<>();
+                for (DataSnapshot day : found.subList(first, last)) {
+                    toRead.add(day.getKey());
+                }
+                boolean moreDays = found.size() == DAYS_PER_LOOKUP || (forward ? last < found.size() : first > 0);
+                readDays(toRead, boundKey, forward, size, page, moreDays, callback);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onError();
+            }
+        });
+    }
+
+    // the counts are hints (a rerun migration counts twice), a short read just means another lookup
+    private static long count(DataSnapshot day) {
+        Object value = day.getValue();
+        return value instanceof Number ? Math.max(1, ((Number) value).longValue()) : 1;
+    }
+
+    private void readDays(List<String> days, String boundKey, boolean forward, int size, List<DataSnapshot> page,
+                          boolean moreDays, PageCallback callback) {
+        int missing = size - page.size();
+        List<List<DataSnapshot>> results = new ArrayList<>();
+        for (int i = 0; i < days.size(); i++) {
+            results.add(null);
+        }
+        // one error per page, whichever day fails first
+        boolean[] failed = {false};
+
+        for (int i = 0; i < days.size(); i++) {
+            int slot = i;
+            Query day = buckets.child(days.get(i)).orderByKey();
+            if (forward) {
+                day = (boundKey == null ? day : day.startAfter(boundKey)).limitToFirst(missing);
+            } else {
+                day = (boundKey == null ? day : day.endBefore(boundKey)).limitToLast(missing);
+            }
+            day.addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    List<DataSnapshot> messages = new ArrayList<>();
+                    for (DataSnapshot child : snapshot.getChildren()) {
+                        messages.add(child);
+                    }
+                    results.set(slot, messages);
+                    if (!results.contains(null)) {
+                        merge(days, results, boundKey, forward, size, page, moreDays, callback);
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    if (!failed[0]) {
+                        failed[0] = true;
+                        callback.onError();
+                    }
+                }
+            });
+        }
+    }
+
+    private void merge(List<String> days, List<List<DataSnapshot>> results, String boundKey, boolean forward,
+                       int size, List<DataSnapshot> page, boolean moreDays, PageCallback callback) {
+        // days are oldest first, so this is in key order
+        List<DataSnapshot> read = new ArrayList<>();
+        for (List<DataSnapshot> day : results) {
+            read.addAll(day);
+        }
+        int missing = size - page.size();
+        if (forward) {
+            page.addAll(read.subList(0, Math.min(missing, read.size())));
+        } else {
+            page.addAll(0, read.subList(Math.max(0, read.size() - missing), read.size()));
+        }
+
+        if (page.size() < size && moreDays) {
+            Query next = forward
+                    ? index.orderByKey().startAfter(days.get(days.size() - 1))
+                    : index.orderByKey().endBefore(days.get(0));
+            lookUpDays(next, boundKey, forward, size, page, callback);
+        } else {
+            callback.onPage(page);
+        }
+    }
+
+    @Override
+    public void attachTail(String afterKey, ChildEventListener listener) {
+        String firstDay = afterKey == null ? null : DayBuckets.bucketOf(afterKey);
+        tailListener = listener;
+        dayQuery = firstDay == null ? index.orderByKey() : index.orderByKey().startAt(firstDay);
+        dayListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                String day = snapshot.getKey();
+                if (dayTails.containsKey(day)) {
+                    return;
+                }
+                Query messages = day.equals(firstDay)
+                        ? buckets.child(day).orderByKey().startAfter(afterKey)
+                        : buckets.child(day).orderByKey();
+                // only the newest day gets new messages
+                for (String older : new ArrayList<>(dayTails.keySet())) {
+                    if (older.compareTo(day) < 0) {
+                        retire(older, listener);
+                    }
+                }
+                dayTails.put(day, messages);
+                messages.addChildEventListener(listener);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                // only the count moved, the day's own listener has the message
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                Query messages = dayTails.remove(snapshot.getKey());
+                if (messages != null) {
+                    messages.removeEventListener(listener);
+                }
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+            }
+        };
+        dayQuery.addChildEventListener(dayListener);
+    }
+
+    // Stops listening to a day, handing its messages over once more: its first
+    // events may not have arrived yet, the stream upserts by key anyway
+    private void retire(String day, ChildEventListener listener) {
+        Query messages = dayTails.remove(day);
+        messages.removeEventListener(listener);
+        messages.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (tailListener != listener) {
+                    // detached meanwhile
+                    return;
+                }
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    listener.onChildAdded(child, null);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+            }
+        });
+    }
+
+    @Override
+    public void detachTail() {
+        if (dayQuery == null) {
+            return;
+        }
+        dayQuery.removeEventListener(dayListener);
+        for (Query messages : dayTails.values()) {
+            messages.removeEventListener(tailListener);
+        }
+        dayTails.clear();
+        dayQuery = null;
+        dayListener = null;
+        tailListener = null;
+    }
+}
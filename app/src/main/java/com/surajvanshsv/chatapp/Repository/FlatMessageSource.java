@@ -0,0 +1,74 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The original layout: {groupName}/{pushKey} -> message, one node per group
+class FlatMessageSource implements MessageSource {
+
+    private final DatabaseReference groupReference;
+    private Query tailQuery;
+    private ChildEventListener tailListener;
+
+    FlatMessageSource(DatabaseReference groupReference) {
+        this.groupReference = groupReference;
+    }
+
+    @Override
+    public void loadPage(String beforeKey, int size, PageCallback callback) {
+        Query query = beforeKey == null
+                ? groupReference.orderByKey()
+                : groupReference.orderByKey().endBefore(beforeKey);
+        read(query.limitToLast(size), callback);
+    }
+
+    @Override
+    public void loadPageAfter(String afterKey, int size, PageCallback callback) {
+        read(groupReference.orderByKey().startAfter(afterKey).limitToFirst(size), callback);
+    }
+
+    private static void read(Query query, PageCallback callback) {
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                List<DataSnapshot> messages = new ArrayList<>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    messages.add(child);
+                }
+                callback.onPage(messages);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onError();
+            }
+        });
+    }
+
+    @Override
+    public void attachTail(String afterKey, ChildEventListener listener) {
+        tailQuery = afterKey == null
+                ? groupReference.orderByKey()
+                : groupReference.orderByKey().startAfter(afterKey);
+        tailListener = listener;
+        tailQuery.addChildEventListener(listener);
+    }
+
+    @Override
+    public void detachTail() {
+        if (tailQuery != null) {
+            tailQuery.removeEventListener(tailListener);
+            tailQuery = null;
+            tailListener = null;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import com.surajvanshsv.chatapp.metrics.DataMetrics;
+import com.surajvanshsv.chatapp.model.ChatGroup;
+import com.surajvanshsv.chatapp.model.GroupEvent;
+import com.surajvanshsv.chatapp.model.SnapshotCodec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Follows the group directory one child at a time, so a new or updated group
+// costs one small event instead of the whole list. The cached groups are shown
+// until the directory answers. After a pause only groups whose lastActivity
+// moved since the newest one seen are fetched (groups are never deleted, so
+// nothing is missed). That needs ".indexOn": "lastActivity" on groups in the
+// rules, without it the server sends the directory and the client filters.
+// Snapshots are decoded on the ingestion thread, the groups are only touched
+// on the main thread, like in MessageStream.
+public class GroupStream implements ChildEventListener, StreamRegistry.SharedStream {
+
+    private final DatabaseReference groupsReference;
+    private final LocalStore store;
+    private final Executor diskExecutor;
+    private final ReadMarks readMarks;
+    // called when the directory does not exist yet
+    private final Runnable onDirectoryMissing;
+    private final DataMetrics metrics;
+    // child events waiting for the ingestion thread
+    private final IngestionInbox<DataSnapshot, ChatGroup> inbox;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    static final int REMOTE_SEARCH_LIMIT = 50;
+
+    private final Map<String, ChatGroup> groups = new HashMap<>();
+    private final MutableLiveData<GroupEvent> events = new MutableLiveData<>();
+    // true once the directory has answered, even when it had no groups to report
+    private final MutableLiveData<Boolean> directoryLoaded = new MutableLiveData<>(false);
+    private long sequence;
+    private boolean started;
+    private boolean remoteLoaded;
+    // newest lastActivity the server has sent, resuming starts there
+    private long syncedActivity;
+    private Query listening;
+
+    GroupStream(DatabaseReference groupsReference, LocalStore store, Executor diskExecutor,
+                ReadMarks readMarks, Runnable onDirectoryMissing, DataMetrics metrics, Ingestion ingestion) {
+        this.metrics = metrics;
+        this.inbox = new IngestionInbox<>(ingestion, Repository.GROUPS_NODE, this::read, this::apply);
+        this.groupsReference = groupsReference;
+        this.store = store;
+        this.diskExecutor = diskExecutor;
+        this.readMarks = readMarks;
+        this.onDirectoryMissing = onDirectoryMissing;
+    }
+
+    @Override
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        if (remoteLoaded) {
+            listening = groupsReference.orderByChild("lastActivity").startAt(syncedActivity);
+            listening.addChildEventListener(this);
+            return;
+        }
+
+        loadCachedGroups();
+        listening = groupsReference;
+        listening.addChildEventListener(this);
+        // Value events come after the child events of the same data, so this
+        // tells us the initial children have all arrived. It is served from the
+        // data the child listener already synced, nothing is downloaded twice.
+        groupsReference.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                // once the child events before this one are decoded and applied
+                inbox.whenIdle(() -> onDirectoryLoaded(snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+
+            }
+        });
+    }
+
+    private void onDirectoryLoaded(DataSnapshot snapshot) {
+        remoteLoaded = true;
+        if (!snapshot.exists()) {
+            onDirectoryMissing.run();
+        }
+
+        // Cached groups that no longer exist
+        Iterator<ChatGroup> iterator = groups.values().iterator();
+        while (iterator.hasNext()) {
+            ChatGroup group = iterator.next();
+            if (!snapshot.hasChild(group.getGroupName())) {
+                iterator.remove();
+                publish(GroupEvent.Type.REMOVED, group);
+            }
+        }
+
+        List<ChatGroup> toCache = getGroups();
+        diskExecutor.execute(() -> store.replaceGroups(toCache));
+        directoryLoaded.setValue(true);
+    }
+
+    @Override
+    public boolean isAttached() {
+        return started;
+    }
+
+    @Override
+    public void stop() {
+        if (started) {
+            listening.removeEventListener(this);
+            listening = null;
+            started = false;
+        }
+    }
+
+    private void loadCachedGroups() {
+        diskExecutor.execute(() -> {
+            List<ChatGroup> cached = store.loadGroups();
+            mainHandler.post(() -> {
+                if (remoteLoaded || cached.isEmpty()) {
+                    return;
+                }
+                for (ChatGroup group : cached) {
+                    if (!groups.containsKey(group.getGroupName())) {
+                        countUnread(group);
+                        groups.put(group.getGroupName(), group);
+                    }
+                }
+                publish(GroupEvent.Type.RESET, null);
+            });
+        });
+    }
+
+    // current groups, in no particular order
+    public List<ChatGroup> getGroups() {
+        return new ArrayList<>(groups.values());
+    }
+
+    public LiveData<GroupEvent> getEvents() {
+        return events;
+    }
+
+    public LiveData<Boolean> getDirectoryLoaded() {
+        return directoryLoaded;
+    }
+
+    // Until the directory has loaded only cached groups are known, so a name
+    // search asks the server for the matching key range as well. Keys are
+    // case-sensitive there, the local filter is not.
+    public void searchRemote(String prefix) {
+        if (remoteLoaded || prefix.isEmpty()) {
+            return;
+        }
+        groupsReference.orderByKey().startAt(prefix).endAt(prefix + "\uf8ff").limitToFirst(REMOTE_SEARCH_LIMIT)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            onChildAdded(child, null);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+
+                    }
+                });
+    }
+
+    // Moves the read mark of the group up to its current message count
+    void markRead(String groupName) {
+        ChatGroup current = groups.get(groupName);
+        if (current == null) {
+            return;
+        }
+        readMarks.markRead(groupName, current.getMessageCount());
+        if (current.getUnreadCount() != 0) {
+            // a copy, the adapter still holds the old instance
+            ChatGroup read = copy(current);
+            read.setUnreadCount(0);
+            groups.put(groupName, read);
+            publish(GroupEvent.Type.CHANGED, read);
+        }
+    }
+
+    // One comparison against the read mark, per group event
+    private void countUnread(ChatGroup group) {
+        group.setUnreadCount(readMarks.getUnreadCount(group.getGroupName(), group.getMessageCount()));
+    }
+
+    private static ChatGroup copy(ChatGroup group) {
+        return new ChatGroup(group.getGroupName(), group.getLastActivity(), group.getLastMessage(),
+                group.getLastSenderId(), group.getMessageCount());
+    }
+
+    @Override
+    public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        inbox.add(snapshot);
+    }
+
+    // main thread, decoded groups in arrival order
+    private void apply(List<ChatGroup> batch) {
+        for (ChatGroup group : batch) {
+            applyGroup(group);
+        }
+    }
+
+    private void applyGroup(ChatGroup group) {
+        syncedActivity = Math.max(syncedActivity, group.getLastActivity());
+        countUnread(group);
+        ChatGroup previous = groups.put(group.getGroupName(), group);
+        if (previous == null) {
+            publish(GroupEvent.Type.ADDED, group);
+        } else if (!previous.hasSameContent(group)) {
+            publish(GroupEvent.Type.CHANGED, group);
+        } else {
+            return;
+        }
+        if (remoteLoaded) {
+            diskExecutor.execute(() -> store.saveGroup(group));
+        }
+    }
+
+    @Override
+    public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        onChildAdded(snapshot, previousChildName);
+    }
+
+    @Override
+    public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+        // after the events that came before it
+        String name = snapshot.getKey();
+        inbox.whenIdle(() -> {
+            ChatGroup removed = groups.remove(name);
+            if (removed != null) {
+                publish(GroupEvent.Type.REMOVED, removed);
+                diskExecutor.execute(() -> store.deleteGroup(removed.getGroupName()));
+            }
+        });
+    }
+
+    @Override
+    public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        // the adapter does its own ordering
+    }
+
+    @Override
+    public void onCancelled(@NonNull DatabaseError error) {
+        // e.g. denied because sign-in had not finished, the next acquire attaches again
+        stop();
+    }
+
+    // ingestion thread
+    private ChatGroup read(DataSnapshot snapshot) {
+        long start = System.nanoTime();
+        ChatGroup group = SnapshotCodec.decodeGroup(snapshot.getKey(), snapshot.getValue());
+        metrics.recordSnapshot(Repository.GROUPS_NODE, 1, group.estimateSizeBytes(), System.nanoTime() - start);
+        return group;
+    }
+
+    private void publish(GroupEvent.Type type, ChatGroup group) {
+        sequence++;
+        metrics.recordEmission(Repository.GROUPS_NODE);
+        events.setValue(new GroupEvent(type, group, sequence));
+    }
+}
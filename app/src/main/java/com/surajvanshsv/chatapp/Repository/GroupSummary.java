@@ -0,0 +1,57 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import com.google.firebase.database.ServerValue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The per-group summary kept in the directory next to createdAt:
+// groups/{groupName} -> { lastMessage, lastSenderId, lastActivity, messageCount }
+// It is written in the same multi-path update as the messages, so the group list
+// can show the newest message without ever reading message bodies. The count
+// is an increment, which is only safe because that update is never applied
+// twice: Outbox checks leftover entries against the server before resending.
+final class GroupSummary {
+
+    // enough for one line on a group card
+    static final int PREVIEW_LENGTH = 80;
+
+    private GroupSummary() {
+    }
+
+    // Adds the summary paths for every group in the batch, the batch is in send order
+    static void addUpdates(Map<String, Object> updates, List<Outbox.Entry> batch) {
+        Map<String, Outbox.Entry> newest = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (Outbox.Entry entry : batch) {
+            Outbox.Entry current = newest.get(entry.groupName);
+            if (current == null || current.message.getKey().compareTo(entry.message.getKey()) < 0) {
+                newest.put(entry.groupName, entry);
+            }
+            Integer count = counts.get(entry.groupName);
+            counts.put(entry.groupName, count == null ? 1 : count + 1);
+        }
+
+        for (Map.Entry<String, Outbox.Entry> group : newest.entrySet()) {
+            String path = Repository.GROUPS_NODE + "/" + group.getKey() + "/";
+            Outbox.Entry entry = group.getValue();
+            updates.put(path + "lastMessage", preview(entry.message.getText()));
+            updates.put(path + "lastSenderId", entry.message.getSenderId());
+            updates.put(path + "lastActivity", ServerValue.TIMESTAMP);
+            updates.put(path + "messageCount", ServerValue.increment(counts.get(group.getKey())));
+        }
+    }
+
+    static String preview(String text) {
+        if (text == null || text.length() <= PREVIEW_LENGTH) {
+            return text;
+        }
+        int end = PREVIEW_LENGTH - 1;
+        // do not cut an emoji in half
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end) + "…";
+    }
+}
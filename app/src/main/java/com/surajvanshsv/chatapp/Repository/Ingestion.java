@@ -0,0 +1,54 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.surajvanshsv.chatapp.metrics.DataMetrics;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// The ingestion thread. Firebase hands snapshots over on the main thread;
+// they are decoded into models here and only the finished, immutable results
+// go back to the main thread. One thread keeps everything in arrival order,
+// and nothing is ever decoded on the caller's thread. The queue itself is not
+// bounded, the streams are: each keeps at most one batch of child events
+// (see IngestionInbox) and one page read per direction in it, so its depth
+// follows the number of open streams, not the rate of events. Queue depth and
+// the time from submit to result are recorded in DataMetrics.
+class Ingestion {
+
+    private final DataMetrics metrics;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "ingestion"));
+
+    Ingestion(DataMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // work runs on the ingestion thread, onResult with its result on the main thread
+    <T> void submit(String scope, Supplier<T> work, Consumer<T> onResult) {
+        long submittedAt = System.nanoTime();
+        metrics.recordQueueDepth(executor.getQueue().size());
+        executor.execute(() -> {
+            T result = work.get();
+            mainHandler.post(() -> {
+                metrics.recordIngestion(scope, System.nanoTime() - submittedAt);
+                onResult.accept(result);
+            });
+        });
+    }
+
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+}
@@ -0,0 +1,76 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Child events of one stream on their way through the ingestion thread.
+// Events that arrive while a batch is being decoded wait here and go as the
+// next batch, so a stream never has more than one task queued and a burst of
+// events costs one hop to the main thread. Results keep the event order.
+// Main thread only, apart from the decoder.
+class IngestionInbox<I, O> {
+
+    private final Ingestion ingestion;
+    private final String scope;
+    // runs on the ingestion thread, null results are dropped
+    private final Function<I, O> decoder;
+    private final Consumer<List<O>> consumer;
+
+    private List<I> pending = new ArrayList<>();
+    private boolean draining;
+    private final List<Runnable> whenIdle = new ArrayList<>();
+
+    IngestionInbox(Ingestion ingestion, String scope, Function<I, O> decoder, Consumer<List<O>> consumer) {
+        this.ingestion = ingestion;
+        this.scope = scope;
+        this.decoder = decoder;
+        this.consumer = consumer;
+    }
+
+    void add(I input) {
+        pending.add(input);
+        drain();
+    }
+
+    // Runs once everything added so far has reached the consumer
+    void whenIdle(Runnable action) {
+        if (!draining && pending.isEmpty()) {
+            action.run();
+        } else {
+            whenIdle.add(action);
+        }
+    }
+
+    private void drain() {
+        if (draining || pending.isEmpty()) {
+            return;
+        }
+        draining = true;
+        List<I> batch = pending;
+        pending = new ArrayList<>();
+        ingestion.submit(scope, () -> {
+            List<O> decoded = new ArrayList<>(batch.size());
+            for (I input : batch) {
+                O output = decoder.apply(input);
+                if (output != null) {
+                    decoded.add(output);
+                }
+            }
+            return decoded;
+        }, decoded -> {
+            draining = false;
+            consumer.accept(decoded);
+            if (!pending.isEmpty()) {
+                drain();
+            } else if (!whenIdle.isEmpty()) {
+                List<Runnable> actions = new ArrayList<>(whenIdle);
+                whenIdle.clear();
+                for (Runnable action : actions) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
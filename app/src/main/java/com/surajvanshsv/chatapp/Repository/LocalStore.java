@@ -0,0 +1,261 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.surajvanshsv.chatapp.model.ChatGroup;
+import com.surajvanshsv.chatapp.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// On-device copy of the groups and messages we have seen, so screens can
+// render before the network answers. Every method does disk I/O, call them
+// from the repository's disk executor, never from the main thread.
+public class LocalStore extends SQLiteOpenHelper {
+
+    private static final String DB_NAME = "chat_cache.db";
+    private static final int DB_VERSION = 4;
+
+    private static final String TABLE_GROUPS = "groups";
+    private static final String TABLE_MESSAGES = "messages";
+    private static final String TABLE_OUTBOX = "outbox";
+
+    // cached messages kept per group, the newest ones; older pages come from the network
+    static final int MAX_MESSAGES_PER_GROUP = 2_000;
+
+    // the message table was (re)created since the last takeCacheReset()
+    private volatile boolean cacheReset;
+
+    LocalStore(Context context) {
+        super(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_GROUPS + " ("
+                + "name TEXT PRIMARY KEY, "
+                + "last_activity INTEGER NOT NULL DEFAULT 0, "
+                + "last_message TEXT, "
+                + "last_sender_id TEXT, "
+                + "message_count INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE TABLE " + TABLE_MESSAGES + " ("
+                + "group_name TEXT NOT NULL, "
+                + "msg_key TEXT NOT NULL, "
+                + "sender_id TEXT, "
+                + "text TEXT, "
+                + "time INTEGER NOT NULL, "
+                + "PRIMARY KEY (group_name, msg_key))");
+        createOutbox(db);
+        cacheReset = true;
+    }
+
+    // Unlike the rest, the outbox is not a cache: it holds messages nobody else has yet
+    private void createOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + " ("
+                + "msg_key TEXT PRIMARY KEY, "
+                + "group_name TEXT NOT NULL, "
+                + "sender_id TEXT, "
+                + "text TEXT, "
+                + "time INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // only a cache, start over, but keep unsent messages
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GROUPS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGES);
+        onCreate(db);
+    }
+
+    // Whether the cached messages were dropped (new install or schema upgrade)
+    // since the last call. Opens the database, so the answer is final.
+    boolean takeCacheReset() {
+        getWritableDatabase();
+        boolean reset = cacheReset;
+        cacheReset = false;
+        return reset;
+    }
+
+    public List<ChatGroup> loadGroups() {
+        List<ChatGroup> groups = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_GROUPS,
+                new String[]{"name", "last_activity", "last_message", "last_sender_id", "message_count"},
+                null, null, null, null, "name")) {
+            while (cursor.moveToNext()) {
+                groups.add(new ChatGroup(cursor.getString(0), cursor.getLong(1),
+                        cursor.getString(2), cursor.getString(3), cursor.getLong(4)));
+            }
+        }
+        return groups;
+    }
+
+    public void replaceGroups(List<ChatGroup> groups) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_GROUPS, null, null);
+            for (ChatGroup group : groups) {
+                db.insertWithOnConflict(TABLE_GROUPS, null, groupValues(group), SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void saveGroup(ChatGroup group) {
+        getWritableDatabase().insertWithOnConflict(TABLE_GROUPS, null, groupValues(group),
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    public void deleteGroup(String groupName) {
+        getWritableDatabase().delete(TABLE_GROUPS, "name = ?", new String[]{groupName});
+    }
+
+    private ContentValues groupValues(ChatGroup group) {
+        ContentValues values = new ContentValues();
+        values.put("name", group.getGroupName());
+        values.put("last_activity", group.getLastActivity());
+        values.put("last_message", group.getLastMessage());
+        values.put("last_sender_id", group.getLastSenderId());
+        values.put("message_count", group.getMessageCount());
+        return values;
+    }
+
+    // newest `limit` messages of the group, oldest first
+    public List<ChatMessage> loadLatestMessages(String groupName, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_MESSAGES,
+                new String[]{"msg_key", "sender_id", "text", "time"},
+                "group_name = ?", new String[]{groupName},
+                null, null, "msg_key DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                ChatMessage message = new ChatMessage(cursor.getString(1), cursor.getString(2), cursor.getLong(3));
+                message.setKey(cursor.getString(0));
+                messages.add(message);
+            }
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    // Upserts the messages and trims the group to its newest MAX_MESSAGES_PER_GROUP
+    // in the same transaction. Returns the keys trimmed, for the search index.
+    public List<String> saveMessages(String groupName, List<ChatMessage> messages) {
+        SQLiteDatabase db = getWritableDatabase();
+        List<String> trimmed;
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (ChatMessage message : messages) {
+                values.put("group_name", groupName);
+                values.put("msg_key", message.getKey());
+                values.put("sender_id", message.getSenderId());
+                values.put("text", message.getText());
+                values.put("time", message.getTime());
+                db.insertWithOnConflict(TABLE_MESSAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            trimmed = trimMessages(db, groupName);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return trimmed;
+    }
+
+    // Everything older than the group's MAX_MESSAGES_PER_GROUP newest keys
+    private List<String> trimMessages(SQLiteDatabase db, String groupName) {
+        List<String> trimmed = new ArrayList<>();
+        String oldestKept;
+        try (Cursor cursor = db.query(TABLE_MESSAGES, new String[]{"msg_key"},
+                "group_name = ?", new String[]{groupName}, null, null, "msg_key DESC",
+                (MAX_MESSAGES_PER_GROUP - 1) + ", 1")) {
+            if (!cursor.moveToFirst()) {
+                return trimmed;
+            }
+            oldestKept = cursor.getString(0);
+        }
+        String selection = "group_name = ? AND msg_key < ?";
+        String[] args = {groupName, oldestKept};
+        try (Cursor cursor = db.query(TABLE_MESSAGES, new String[]{"msg_key"},
+                selection, args, null, null, null)) {
+            while (cursor.moveToNext()) {
+                trimmed.add(cursor.getString(0));
+            }
+        }
+        if (!trimmed.isEmpty()) {
+            db.delete(TABLE_MESSAGES, selection, args);
+        }
+        return trimmed;
+    }
+
+    // every cached message, one group after the other, for rebuilding the search index
+    void forEachMessage(BiConsumer<String, ChatMessage> action) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_MESSAGES,
+                new String[]{"group_name", "msg_key", "sender_id", "text", "time"},
+                null, null, null, null, "group_name, msg_key")) {
+            while (cursor.moveToNext()) {
+                ChatMessage message = new ChatMessage(cursor.getString(2), cursor.getString(3), cursor.getLong(4));
+                message.setKey(cursor.getString(1));
+                action.accept(cursor.getString(0), message);
+            }
+        }
+    }
+
+    public void deleteMessage(String groupName, String key) {
+        getWritableDatabase().delete(TABLE_MESSAGES, "group_name = ? AND msg_key = ?",
+                new String[]{groupName, key});
+    }
+
+    void saveOutboxEntry(Outbox.Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put("msg_key", entry.message.getKey());
+        values.put("group_name", entry.groupName);
+        values.put("sender_id", entry.message.getSenderId());
+        values.put("text", entry.message.getText());
+        values.put("time", entry.message.getTime());
+        getWritableDatabase().insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // every unsent message, in the order they were written
+    List<Outbox.Entry> loadOutbox() {
+        return queryOutbox(null, null);
+    }
+
+    List<Outbox.Entry> loadOutbox(String groupName) {
+        return queryOutbox("group_name = ?", new String[]{groupName});
+    }
+
+    private List<Outbox.Entry> queryOutbox(String selection, String[] selectionArgs) {
+        List<Outbox.Entry> entries = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_OUTBOX,
+                new String[]{"msg_key", "group_name", "sender_id", "text", "time"},
+                selection, selectionArgs, null, null, "msg_key")) {
+            while (cursor.moveToNext()) {
+                ChatMessage message = new ChatMessage(cursor.getString(2), cursor.getString(3), cursor.getLong(4));
+                message.setKey(cursor.getString(0));
+                entries.add(new Outbox.Entry(cursor.getString(1), message));
+            }
+        }
+        return entries;
+    }
+
+    void deleteOutboxEntries(List<Outbox.Entry> entries) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Outbox.Entry entry : entries) {
+                db.delete(TABLE_OUTBOX, "msg_key = ?", new String[]{entry.message.getKey()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
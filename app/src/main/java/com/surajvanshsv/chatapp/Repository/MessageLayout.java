@@ -0,0 +1,91 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.DayBuckets;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// How messages are laid out in the database.
+// Flat (the original): {groupName}/{pushKey} -> message, one node that grows forever.
+// Day buckets: dayBuckets/{groupName}/{yyyyMMdd}/{pushKey} -> message, plus
+// dayIndex/{groupName}/{yyyyMMdd} -> message count, so every read and listener
+// covers one day. Groups written flat are moved over by DayBucketMigration.
+final class MessageLayout {
+
+    // Switch every client of a release at once: flat clients do not see bucketed messages
+    static final boolean DAY_BUCKETS = false;
+
+    static final String BUCKETS_NODE = "dayBuckets";
+    static final String INDEX_NODE = "dayIndex";
+
+    // groups/{groupName}/layout, set once a group's messages are in day buckets
+    static final String LAYOUT_FIELD = "layout";
+    static final String LAYOUT_DAYS = "days";
+
+    private MessageLayout() {
+    }
+
+    static MessageSource source(DatabaseReference root, String groupName) {
+        if (DAY_BUCKETS) {
+            return new DayBucketSource(root.child(BUCKETS_NODE).child(groupName),
+                    root.child(INDEX_NODE).child(groupName));
+        }
+        return new FlatMessageSource(root.child(groupName));
+    }
+
+    // where the message is stored, relative to the root
+    static String messagePath(String groupName, String key) {
+        if (DAY_BUCKETS) {
+            return BUCKETS_NODE + "/" + groupName + "/" + DayBuckets.bucketOf(key) + "/" + key;
+        }
+        return groupName + "/" + key;
+    }
+
+    // Adds the message paths of an outbox batch to a multi-path update
+    static void addUpdates(Map<String, Object> updates, List<Outbox.Entry> batch) {
+        if (!DAY_BUCKETS) {
+            for (Outbox.Entry entry : batch) {
+                updates.put(messagePath(entry.groupName, entry.message.getKey()), entry.message.toMap());
+            }
+            return;
+        }
+        Map<String, Integer> perDay = new HashMap<>();
+        for (Outbox.Entry entry : batch) {
+            addBucketUpdate(updates, perDay, entry.groupName, entry.message);
+        }
+        addIndexUpdates(updates, perDay);
+    }
+
+    // the same for messages of one group, for the migration
+    static void addBucketUpdates(Map<String, Object> updates, String groupName, List<ChatMessage> messages) {
+        Map<String, Integer> perDay = new HashMap<>();
+        for (ChatMessage message : messages) {
+            addBucketUpdate(updates, perDay, groupName, message);
+        }
+        addIndexUpdates(updates, perDay);
+    }
+
+    private static void addBucketUpdate(Map<String, Object> updates, Map<String, Integer> perDay,
+                                        String groupName, ChatMessage message) {
+        String day = groupName + "/" + DayBuckets.bucketOf(message.getKey());
+        updates.put(BUCKETS_NODE + "/" + day + "/" + message.getKey(), message.toMap());
+        Integer count = perDay.get(day);
+        perDay.put(day, count == null ? 1 : count + 1);
+    }
+
+    private static void addIndexUpdates(Map<String, Object> updates, Map<String, Integer> perDay) {
+        for (Map.Entry<String, Integer> day : perDay.entrySet()) {
+            updates.put(INDEX_NODE + "/" + day.getKey(), ServerValue.increment(day.getValue()));
+        }
+    }
+
+    // root nodes that are not groups
+    static boolean isReservedNode(String name) {
+        return Repository.GROUPS_NODE.equals(name) || Repository.PRESENCE_NODE.equals(name)
+                || BUCKETS_NODE.equals(name) || INDEX_NODE.equals(name);
+    }
+}
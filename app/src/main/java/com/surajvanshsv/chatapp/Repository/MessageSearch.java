@@ -0,0 +1,127 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.search.MessageIndex;
+import com.surajvanshsv.chatapp.search.SearchHit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+// The MessageIndex of everything the LocalStore caches, kept in a file next to it.
+// Messages are added as they are persisted, the file is rewritten every
+// SAVE_EVERY changes. The file and the store are dropped separately (the OS
+// clears the cache directory, a schema upgrade empties the store), so the
+// index is rebuilt from the store whenever the file is missing or unreadable,
+// and thrown away with the store. Like the LocalStore, only call it from the
+// disk executor.
+class MessageSearch {
+
+    private static final String TAG = "MessageSearch";
+    private static final String FILE_NAME = "message_index.bin";
+    static final int SAVE_EVERY = 500;
+
+    private final File file;
+    private final LocalStore store;
+    private MessageIndex index;
+    private int unsavedChanges;
+
+    MessageSearch(Context context, LocalStore store) {
+        file = new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+        this.store = store;
+    }
+
+    // loaded on first use, rebuilt from the store when the file can't be trusted
+    private MessageIndex index() {
+        if (index == null) {
+            if (store.takeCacheReset()) {
+                // written for messages the store no longer has
+                file.delete();
+            } else if (file.exists()) {
+                try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                    index = MessageIndex.readFrom(in);
+                } catch (IOException e) {
+                    Log.w(TAG, "Dropping unreadable search index", e);
+                }
+            }
+            if (index == null) {
+                rebuild();
+            }
+        }
+        return index;
+    }
+
+    private void rebuild() {
+        MessageIndex rebuilt = new MessageIndex();
+        int[] count = {0};
+        store.forEachMessage((groupName, message) -> {
+            rebuilt.add(groupName, message.getKey(), message.getText(), message.getTime());
+            count[0]++;
+        });
+        index = rebuilt;
+        unsavedChanges += count[0];
+        save();
+    }
+
+    void add(String groupName, List<ChatMessage> messages) {
+        MessageIndex index = index();
+        for (ChatMessage message : messages) {
+            index.add(groupName, message.getKey(), message.getText(), message.getTime());
+        }
+        changed(messages.size());
+    }
+
+    void remove(String groupName, String key) {
+        index().remove(groupName, key);
+        changed(1);
+    }
+
+    // messages the store trimmed away
+    void remove(String groupName, List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        MessageIndex index = index();
+        for (String key : keys) {
+            index.remove(groupName, key);
+        }
+        changed(keys.size());
+    }
+
+    List<SearchHit> search(String query, int limit) {
+        return index().search(query, limit);
+    }
+
+    private void changed(int count) {
+        unsavedChanges += count;
+        if (unsavedChanges >= SAVE_EVERY) {
+            save();
+        }
+    }
+
+    void save() {
+        if (index == null || unsavedChanges == 0) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            index.writeTo(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save search index", e);
+            return;
+        }
+        // the old file stays until the new one is complete
+        if (temp.renameTo(file)) {
+            unsavedChanges = 0;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.List;
+
+// Where the messages of one group live in the database, see MessageLayout.
+// MessageStream pages and follows a group only through this.
+interface MessageSource {
+
+    interface PageCallback {
+        // message snapshots, oldest first
+        void onPage(List<DataSnapshot> messages);
+
+        void onError();
+    }
+
+    // The newest `size` messages older than beforeKey, or the newest of all
+    // when beforeKey is null. Fewer than `size` means the history starts there.
+    void loadPage(String beforeKey, int size, PageCallback callback);
+
+    // The oldest `size` messages newer than afterKey. Fewer than `size` means
+    // they reach the newest message.
+    void loadPageAfter(String afterKey, int size, PageCallback callback);
+
+    // Every message after afterKey (all of them when null), now and later
+    void attachTail(String afterKey, ChildEventListener listener);
+
+    void detachTail();
+}
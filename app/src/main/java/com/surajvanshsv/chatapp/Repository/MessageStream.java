@@ -0,0 +1,598 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.surajvanshsv.chatapp.metrics.DataMetrics;
+import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.MessageEvent;
+import com.surajvanshsv.chatapp.model.MessageList;
+import com.surajvanshsv.chatapp.model.MessageRow;
+import com.surajvanshsv.chatapp.model.SnapshotCodec;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Streams the messages of one group child by child.
+// Opening loads only the newest page, then a child listener follows everything
+// newer than that page, so a new message costs the same no matter how long the
+// history is. Older pages are fetched on demand, and pages at either end are
+// dropped again when they are far from what the user is looking at. While the
+// newest pages are dropped the tail is detached, they are paged back in (and
+// the tail attached again) when the user scrolls back down.
+// The group is read through a MessageSource, which knows the storage layout.
+// Messages are also written to the LocalStore, and the newest cached page is
+// shown right away while the network page is on its way, and indexed for search.
+// The stream keeps the messages as render-ready MessageRows sorted by push key
+// (which is chronological) and reports every change as a MessageEvent. Firebase calls back on the main
+// thread, the snapshots are decoded on the ingestion thread and the list is only touched on the main thread.
+public class MessageStream implements ChildEventListener, StreamRegistry.SharedStream {
+
+    private static final String TAG = "MessageStream";
+
+    private final String groupName;
+    private final MessageSource source;
+    private final PagingConfig config;
+    private final LocalStore store;
+    private final MessageSearch search;
+    private final Executor diskExecutor;
+    private final String currentUserId;
+    private final DataMetrics metrics;
+    private final Ingestion ingestion;
+    // child events waiting for the ingestion thread
+    private final IngestionInbox<Change, Decoded> inbox;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MessageList messages = new MessageList();
+    private final MutableLiveData<MessageEvent> events = new MutableLiveData<>();
+    // told about every change while the stream is in the warm cache
+    private Runnable onChanged;
+
+    private boolean started;
+    private boolean initialPageLoaded;
+    private boolean loadingInitialPage;
+    // keys of our own messages still in the outbox
+    private final Set<String> pendingKeys = new HashSet<>();
+    private boolean tailAttached;
+    private boolean loadingOlder;
+    private boolean reachedStart;
+    // pages newer than the held ones were dropped, the tail is detached until they are back
+    private boolean newerDropped;
+    private boolean loadingNewer;
+
+    // time-to-first-message, disk vs network
+    private long openedAt;
+
+    MessageStream(String groupName, MessageSource source, PagingConfig config,
+                  LocalStore store, MessageSearch search, Executor diskExecutor, String currentUserId,
+                  DataMetrics metrics, Ingestion ingestion) {
+        this.groupName = groupName;
+        this.metrics = metrics;
+        this.ingestion = ingestion;
+        this.inbox = new IngestionInbox<>(ingestion, groupName, this::decode, this::apply);
+        this.currentUserId = currentUserId;
+        this.source = source;
+        this.config = config;
+        this.store = store;
+        this.search = search;
+        this.diskExecutor = diskExecutor;
+    }
+
+    @Override
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        if (initialPageLoaded) {
+            if (!newerDropped) {
+                // Resuming, only what came after our newest message is needed
+                Log.i(TAG, groupName + ": resuming after " + newestConfirmedKey());
+                attachTail();
+            }
+            return;
+        }
+        if (loadingInitialPage) {
+            // stopped and started again before the page came, it attaches the tail
+            return;
+        }
+        loadingInitialPage = true;
+
+        openedAt = SystemClock.elapsedRealtime();
+        loadCachedPage();
+
+        source.loadPage(null, config.getPageSize(), new MessageSource.PageCallback() {
+            @Override
+            public void onPage(List<DataSnapshot> snapshots) {
+                ingestion.submit(groupName, () -> readPage(snapshots), page -> {
+                    loadingInitialPage = false;
+                    logFirstMessages("network", page.messages.size());
+                    reachedStart = page.messages.size() < config.getPageSize();
+                    persist(page.messages);
+                    mergeNetworkPage(page.rows, !reachedStart);
+                    initialPageLoaded = true;
+                    if (started) {
+                        attachTail();
+                    }
+                });
+            }
+
+            @Override
+            public void onError() {
+                loadingInitialPage = false;
+                started = false;
+            }
+        });
+    }
+
+    private void loadCachedPage() {
+        diskExecutor.execute(() -> {
+            // rows are built here, off the main thread
+            List<MessageRow> cached = toRows(store.loadLatestMessages(groupName, config.getPageSize()));
+            List<Outbox.Entry> unsent = store.loadOutbox(groupName);
+            mainHandler.post(() -> {
+                logFirstMessages("disk", cached.size());
+                // the network page came first, it is newer than anything cached
+                if (!initialPageLoaded) {
+                    mergePage(cached);
+                }
+                for (Outbox.Entry entry : unsent) {
+                    addPending(entry.message);
+                }
+            });
+        });
+    }
+
+    // both sources answer once per open, compare the two lines to see what the cache saves
+    private void logFirstMessages(String source, int count) {
+        if (count == 0) {
+            return;
+        }
+        Log.i(TAG, groupName + ": first " + count + " messages from " + source + " after "
+                + (SystemClock.elapsedRealtime() - openedAt) + " ms");
+    }
+
+    @Override
+    public boolean isAttached() {
+        return started;
+    }
+
+    @Override
+    public void stop() {
+        started = false;
+        if (tailAttached) {
+            source.detachTail();
+            tailAttached = false;
+        }
+    }
+
+    // Listens to every message after the newest one we hold.
+    // Messages of the loaded pages are not watched: the app never edits or deletes them.
+    private void attachTail() {
+        if (tailAttached) {
+            return;
+        }
+        source.attachTail(newestConfirmedKey(), this);
+        tailAttached = true;
+    }
+
+    // Pending keys come from this device's clock, someone else's message may
+    // still arrive before them, so the tail never starts after a pending one
+    private String newestConfirmedKey() {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (!messages.get(i).isPending()) {
+                return messages.get(i).getKey();
+            }
+        }
+        return null;
+    }
+
+    // Local echo of a message that is still in the outbox
+    void addPending(ChatMessage message) {
+        pendingKeys.add(message.getKey());
+        if (!newerDropped) {
+            upsert(MessageRow.from(message, currentUserId));
+        }
+        // otherwise it comes back with the newest pages, Firebase has the local write
+    }
+
+    // The outbox got these messages onto the server
+    void confirm(List<String> keys) {
+        for (String key : keys) {
+            if (pendingKeys.remove(key)) {
+                int position = messages.indexOf(key);
+                if (position >= 0) {
+                    upsert(messages.get(position));
+                }
+            }
+        }
+    }
+
+    // The server refused the message, its local echo goes
+    void fail(String key) {
+        if (pendingKeys.remove(key)) {
+            remove(key);
+        }
+    }
+
+    // Called with the visible adapter positions whenever the list scrolls
+    public void onViewportChanged(int firstVisiblePosition, int lastVisiblePosition) {
+        int prefetch = config.getPrefetchDistance();
+        if (firstVisiblePosition <= prefetch) {
+            loadOlder();
+        }
+        if (lastVisiblePosition >= messages.size() - 1 - prefetch) {
+            loadNewer();
+        }
+
+        // Drop whole pages beyond the limit from the end farther from the viewport,
+        // keeping at least one page beyond the prefetch distance on that side
+        int excess = messages.size() - config.getMaxLoaded();
+        if (excess < config.getPageSize()) {
+            return;
+        }
+        int above = firstVisiblePosition;
+        int below = messages.size() - 1 - lastVisiblePosition;
+        int offScreen = Math.max(above, below) - prefetch - config.getPageSize();
+        int pages = Math.min(excess, offScreen) / config.getPageSize();
+        if (pages <= 0) {
+            return;
+        }
+        if (above >= below) {
+            dropOldest(pages * config.getPageSize());
+        } else {
+            dropNewest(pages * config.getPageSize());
+        }
+    }
+
+    public void loadOlder() {
+        if (loadingOlder || reachedStart || messages.isEmpty()) {
+            return;
+        }
+        loadingOlder = true;
+
+        String oldestKey = messages.get(0).getKey();
+        source.loadPage(oldestKey, config.getPageSize(), new MessageSource.PageCallback() {
+            @Override
+            public void onPage(List<DataSnapshot> snapshots) {
+                ingestion.submit(groupName, () -> readPage(snapshots), page -> {
+                    loadingOlder = false;
+                    reachedStart = page.messages.size() < config.getPageSize();
+                    // the page must still end right before our oldest message
+                    if (!messages.isEmpty() && oldestKey.equals(messages.get(0).getKey())) {
+                        persist(page.messages);
+                        insertPage(page.rows);
+                    }
+                });
+            }
+
+            @Override
+            public void onError() {
+                loadingOlder = false;
+            }
+        });
+    }
+
+    // Pages the newest ones back in, oldest first, once they were dropped
+    private void loadNewer() {
+        if (loadingNewer || !newerDropped || messages.isEmpty()) {
+            return;
+        }
+        loadingNewer = true;
+
+        String newestKey = messages.get(messages.size() - 1).getKey();
+        source.loadPageAfter(newestKey, config.getPageSize(), new MessageSource.PageCallback() {
+            @Override
+            public void onPage(List<DataSnapshot> snapshots) {
+                ingestion.submit(groupName, () -> readPage(snapshots), page -> {
+                    loadingNewer = false;
+                    // the page must still start right after our newest message
+                    if (messages.isEmpty() || !newestKey.equals(messages.get(messages.size() - 1).getKey())) {
+                        return;
+                    }
+                    persist(page.messages);
+                    appendPage(page.rows);
+                    if (page.messages.size() < config.getPageSize()) {
+                        // caught up, live messages come from the tail again
+                        newerDropped = false;
+                        if (started) {
+                            attachTail();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onError() {
+                loadingNewer = false;
+            }
+        });
+    }
+
+    private void dropOldest(int count) {
+        messages.removeFirst(count);
+        reachedStart = false;
+        publish(MessageEvent.Type.PAGE_DROPPED, null, null, 0, count);
+    }
+
+    // The tail would add live messages after the gap, it waits until the pages are back
+    private void dropNewest(int count) {
+        messages.removeLast(count);
+        newerDropped = true;
+        if (tailAttached) {
+            source.detachTail();
+            tailAttached = false;
+        }
+        publish(MessageEvent.Type.PAGE_DROPPED, null, null, messages.size(), count);
+    }
+
+    // current messages, oldest first
+    public List<MessageRow> getMessages() {
+        return messages.asList();
+    }
+
+    // rough heap footprint of the held rows, for the warm cache's byte budget
+    long estimateSizeBytes() {
+        long bytes = 0;
+        for (MessageRow row : messages.asList()) {
+            // object headers and fields, plus two bytes per char of the strings
+            bytes += 96 + 2L * (length(row.getKey()) + length(row.getSenderId())
+                    + length(row.getText()) + length(row.getFormattedTime()));
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    void setOnChanged(Runnable onChanged) {
+        this.onChanged = onChanged;
+    }
+
+    public LiveData<MessageEvent> getEvents() {
+        return events;
+    }
+
+    // Child events go through the inbox, removals too so that they keep their order
+    @Override
+    public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        inbox.add(new Change(snapshot, false));
+    }
+
+    @Override
+    public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        onChildAdded(snapshot, previousChildName);
+    }
+
+    @Override
+    public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+        inbox.add(new Change(snapshot, true));
+    }
+
+    @Override
+    public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        // messages are ordered by key, a move never changes our order
+    }
+
+    @Override
+    public void onCancelled(@NonNull DatabaseError error) {
+
+    }
+
+    // a child event as Firebase delivered it
+    private static class Change {
+        final DataSnapshot snapshot;
+        final boolean removed;
+
+        Change(DataSnapshot snapshot, boolean removed) {
+            this.snapshot = snapshot;
+            this.removed = removed;
+        }
+    }
+
+    // what a child event became on the ingestion thread, message and row are null for a removal
+    private static class Decoded {
+        final String key;
+        final ChatMessage message;
+        final MessageRow row;
+
+        Decoded(String key, ChatMessage message, MessageRow row) {
+            this.key = key;
+            this.message = message;
+            this.row = row;
+        }
+    }
+
+    // a page decoded on the ingestion thread, messages to persist and rows to show
+    private static class Page {
+        final List<ChatMessage> messages;
+        final List<MessageRow> rows;
+
+        Page(List<ChatMessage> messages, List<MessageRow> rows) {
+            this.messages = messages;
+            this.rows = rows;
+        }
+    }
+
+    // decoded by hand from the raw value, no reflection
+    private ChatMessage read(DataSnapshot snapshot) {
+        return SnapshotCodec.decodeMessage(snapshot.getKey(), snapshot.getValue());
+    }
+
+    // ingestion thread
+    private Decoded decode(Change change) {
+        String key = change.snapshot.getKey();
+        if (change.removed) {
+            return new Decoded(key, null, null);
+        }
+        long start = System.nanoTime();
+        ChatMessage message = read(change.snapshot);
+        if (message == null) {
+            return null;
+        }
+        MessageRow row = MessageRow.from(message, currentUserId);
+        metrics.recordSnapshot(groupName, 1, message.estimateSizeBytes(), System.nanoTime() - start);
+        return new Decoded(key, message, row);
+    }
+
+    // main thread, a batch of decoded child events in arrival order
+    private void apply(List<Decoded> batch) {
+        List<ChatMessage> arrived = new ArrayList<>();
+        for (Decoded decoded : batch) {
+            if (decoded.message == null) {
+                remove(decoded.key);
+            } else {
+                arrived.add(decoded.message);
+                if (!beyondDroppedPages(decoded.key)) {
+                    upsert(decoded.row);
+                }
+            }
+        }
+        persist(arrived);
+    }
+
+    // tail events decoded before the newest pages were dropped, they come back with the pages
+    private boolean beyondDroppedPages(String key) {
+        return newerDropped && !messages.isEmpty()
+                && key.compareTo(messages.get(messages.size() - 1).getKey()) > 0;
+    }
+
+    private void remove(String key) {
+        int position = messages.indexOf(key);
+        if (position >= 0) {
+            MessageRow removed = messages.remove(position);
+            publish(MessageEvent.Type.REMOVED, key, removed, position, 1);
+        }
+        diskExecutor.execute(() -> {
+            store.deleteMessage(groupName, key);
+            search.remove(groupName, key);
+        });
+    }
+
+    // ingestion thread
+    private Page readPage(List<DataSnapshot> snapshots) {
+        long start = System.nanoTime();
+        List<ChatMessage> page = new ArrayList<>();
+        long bytes = 0;
+        for (DataSnapshot dataSnapshot : snapshots) {
+            ChatMessage message = read(dataSnapshot);
+            if (message != null) {
+                page.add(message);
+                bytes += message.estimateSizeBytes();
+            }
+        }
+        List<MessageRow> rows = toRows(page);
+        metrics.recordSnapshot(groupName, snapshots.size(), bytes, System.nanoTime() - start);
+        return new Page(page, rows);
+    }
+
+    private void persist(List<ChatMessage> page) {
+        if (!page.isEmpty()) {
+            diskExecutor.execute(() -> {
+                List<String> trimmed = store.saveMessages(groupName, page);
+                search.add(groupName, page);
+                search.remove(groupName, trimmed);
+            });
+        }
+    }
+
+    // ownership and time formatting are resolved here, once per message
+    private List<MessageRow> toRows(List<ChatMessage> page) {
+        List<MessageRow> rows = new ArrayList<>(page.size());
+        for (ChatMessage message : page) {
+            rows.add(MessageRow.from(message, currentUserId));
+        }
+        return rows;
+    }
+
+    // A full network page that starts after the newest cached message means more
+    // than a page arrived since the cache was written. The cached rows are not
+    // contiguous with it and loadOlder only pages before the oldest row, so the
+    // gap would never be filled: the cached rows go, pending ones stay.
+    private void mergeNetworkPage(List<MessageRow> page, boolean full) {
+        String newestCached = newestConfirmedKey();
+        if (full && newestCached != null && page.get(0).getKey().compareTo(newestCached) > 0) {
+            int dropped = 0;
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                MessageRow row = messages.get(i);
+                if (!row.isPending() && row.getKey().compareTo(page.get(0).getKey()) < 0) {
+                    messages.remove(i);
+                    dropped++;
+                }
+            }
+            if (dropped > 0) {
+                Log.i(TAG, groupName + ": dropped " + dropped + " cached messages, the network page is newer");
+                publish(MessageEvent.Type.PAGE_DROPPED, null, null, 0, dropped);
+            }
+        }
+        mergePage(page);
+    }
+
+    // The cached and the network copy of the newest page overlap, merge them by key
+    private void mergePage(List<MessageRow> page) {
+        if (messages.isEmpty()) {
+            insertPage(page);
+            return;
+        }
+        for (MessageRow row : page) {
+            upsert(row);
+        }
+    }
+
+    // Pages are always older than everything loaded, so they go to the front
+    private void insertPage(List<MessageRow> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        messages.addFirst(page);
+        publish(MessageEvent.Type.PAGE_LOADED, null, null, 0, page.size());
+    }
+
+    // Pages paged back in after the newest were dropped go to the end
+    private void appendPage(List<MessageRow> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        int position = messages.size();
+        List<MessageRow> rows = new ArrayList<>(page.size());
+        for (MessageRow row : page) {
+            rows.add(row.withPending(pendingKeys.contains(row.getKey())));
+        }
+        messages.addLast(rows);
+        publish(MessageEvent.Type.PAGE_LOADED, null, null, position, rows.size());
+    }
+
+    private void upsert(MessageRow row) {
+        String key = row.getKey();
+        // Firebase raises our own writes locally before the server has them,
+        // such a row stays pending until the outbox confirms it
+        row = row.withPending(pendingKeys.contains(key));
+        MessageEvent.Type change = messages.upsert(row);
+        if (change != null) {
+            publish(change, key, row, messages.indexOf(key), 1);
+        }
+    }
+
+    private void publish(MessageEvent.Type type, String key, MessageRow row, int position, int count) {
+        metrics.recordEmission(groupName);
+        // setValue (not postValue) so that no event is conflated away
+        events.setValue(new MessageEvent(type, key, row, position, count));
+        if (onChanged != null) {
+            onChanged.run();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Recently closed message streams, kept with their messages so that going
+// back to a group renders at once and only resumes from its newest message.
+// Bounded by number of groups and by an estimate of the memory they hold,
+// least recently used first out. A cached stream still takes pending and
+// in-flight messages, so its size is measured again whenever it changes.
+// Main thread only.
+class MessageStreamCache {
+
+    static final int MAX_GROUPS = 8;
+    static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    private final int maxGroups;
+    private final long maxBytes;
+    // access order, eldest = least recently used
+    private final LinkedHashMap<String, MessageStream> streams = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> sizes = new LinkedHashMap<>();
+    private long totalBytes;
+
+    private long hits;
+    private long misses;
+
+    MessageStreamCache(int maxGroups, long maxBytes) {
+        this.maxGroups = maxGroups;
+        this.maxBytes = maxBytes;
+    }
+
+    // the stream must already be stopped
+    void put(String groupName, MessageStream stream) {
+        remove(groupName);
+        long size = stream.estimateSizeBytes();
+        if (size > maxBytes) {
+            return;
+        }
+        streams.put(groupName, stream);
+        sizes.put(groupName, size);
+        totalBytes += size;
+        stream.setOnChanged(() -> resize(groupName));
+        trim();
+    }
+
+    private void resize(String groupName) {
+        MessageStream stream = streams.get(groupName);
+        if (stream == null) {
+            return;
+        }
+        long size = stream.estimateSizeBytes();
+        totalBytes += size - sizes.put(groupName, size);
+        if (size > maxBytes) {
+            remove(groupName);
+            return;
+        }
+        trim();
+    }
+
+    // removes and returns the cached stream, or null on a miss
+    MessageStream take(String groupName) {
+        MessageStream stream = remove(groupName);
+        if (stream != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return stream;
+    }
+
+    // the cached stream without taking it out or counting a hit
+    MessageStream peek(String groupName) {
+        return streams.get(groupName);
+    }
+
+    private MessageStream remove(String groupName) {
+        MessageStream stream = streams.remove(groupName);
+        if (stream != null) {
+            totalBytes -= sizes.remove(groupName);
+            stream.setOnChanged(null);
+        }
+        return stream;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, MessageStream>> eldest = streams.entrySet().iterator();
+        while ((streams.size() > maxGroups || totalBytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<String, MessageStream> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= sizes.remove(entry.getKey());
+            entry.getValue().setOnChanged(null);
+        }
+    }
+
+    long getHitCount() {
+        return hits;
+    }
+
+    long getMissCount() {
+        return misses;
+    }
+
+    // share of stream opens served from the cache, 0 when nothing was opened yet
+    double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    int size() {
+        return streams.size();
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,225 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.surajvanshsv.chatapp.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Durable queue of outgoing messages.
+// A message gets its push key locally and is shown as pending straight away.
+// It is written to the LocalStore so it survives a restart. Everything queued
+// within a short window goes out as one atomic multi-path update per group,
+// together with the group's summary (see GroupSummary). Batches that fail on
+// the way are retried with exponential backoff. A batch the server rejects
+// (rules or validation) is sent again one message at a time, and a single
+// message it rejects is dropped, so it cannot hold up anything else. A message
+// stops being pending when the write that carried it completes. Entries left
+// from an earlier run are only sent again if the server does not have them.
+// Main thread only, disk work on diskExecutor.
+class Outbox {
+
+    static class Entry {
+        final String groupName;
+        final ChatMessage message;
+
+        Entry(String groupName, ChatMessage message) {
+            this.groupName = groupName;
+            this.message = message;
+        }
+    }
+
+    interface Listener {
+        // the message should be shown as pending
+        void onPending(String groupName, ChatMessage message);
+
+        // the messages with these keys are stored on the server
+        void onConfirmed(String groupName, List<String> keys);
+
+        // the server refused the message, it is not sent again
+        void onFailed(String groupName, String key);
+    }
+
+    private static final String TAG = "Outbox";
+
+    static final long COALESCE_DELAY_MS = 150;
+    static final long MAX_BACKOFF_MS = 60_000;
+
+    private final DatabaseReference reference;
+    private final LocalStore store;
+    private final Executor diskExecutor;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+
+    private final List<Entry> queue = new ArrayList<>();
+    private boolean flushScheduled;
+    // writes not completed yet
+    private int inFlight;
+    private int failures;
+    // keys of messages in a rejected batch, they go out alone to find the one the server refuses
+    private final Set<String> isolated = new HashSet<>();
+
+    Outbox(DatabaseReference reference, LocalStore store, Executor diskExecutor, Listener listener) {
+        this.reference = reference;
+        this.store = store;
+        this.diskExecutor = diskExecutor;
+        this.listener = listener;
+    }
+
+    // Re-queues what was left over from the last run
+    void restore() {
+        diskExecutor.execute(() -> {
+            List<Entry> saved = store.loadOutbox();
+            mainHandler.post(() -> {
+                for (Entry entry : saved) {
+                    verify(entry, 0);
+                }
+            });
+        });
+    }
+
+    // The last run may have ended after the server applied an update but
+    // before its entries were deleted. The message and the summary increment
+    // are one atomic update, so if the message is on the server all of it was
+    // applied: sending it again would count it twice. Only messages the server
+    // does not have are queued again.
+    private void verify(Entry entry, int attempt) {
+        reference.child(MessageLayout.messagePath(entry.groupName, entry.message.getKey())).get()
+                .addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        // offline, ask again later, the entry stays on disk meanwhile
+                        mainHandler.postDelayed(() -> verify(entry, attempt + 1),
+                                Math.min(MAX_BACKOFF_MS, 1000L << Math.min(attempt, 6)));
+                        return;
+                    }
+                    List<Entry> single = new ArrayList<>();
+                    single.add(entry);
+                    if (task.getResult().exists()) {
+                        diskExecutor.execute(() -> store.deleteOutboxEntries(single));
+                        confirm(single);
+                    } else {
+                        queue.add(entry);
+                        scheduleFlush(0);
+                    }
+                });
+    }
+
+    void enqueue(String groupName, ChatMessage message) {
+        Entry entry = new Entry(groupName, message);
+        queue.add(entry);
+        listener.onPending(groupName, message);
+        diskExecutor.execute(() -> store.saveOutboxEntry(entry));
+        scheduleFlush(COALESCE_DELAY_MS);
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (flushScheduled || inFlight > 0) {
+            // the running flush picks new entries up when it is done
+            return;
+        }
+        flushScheduled = true;
+        mainHandler.postDelayed(flushRunnable, delayMs);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Entry>> batches = new LinkedHashMap<>();
+        for (Entry entry : queue) {
+            String batchKey = isolated.contains(entry.message.getKey())
+                    ? entry.groupName + "/" + entry.message.getKey()
+                    : entry.groupName;
+            List<Entry> batch = batches.get(batchKey);
+            if (batch == null) {
+                batch = new ArrayList<>();
+                batches.put(batchKey, batch);
+            }
+            batch.add(entry);
+        }
+        queue.clear();
+
+        for (List<Entry> batch : batches.values()) {
+            write(batch);
+        }
+    }
+
+    // one group's messages and its summary, all or nothing
+    private void write(List<Entry> batch) {
+        inFlight++;
+
+        Map<String, Object> updates = new HashMap<>();
+        MessageLayout.addUpdates(updates, batch);
+        GroupSummary.addUpdates(updates, batch);
+
+        reference.updateChildren(updates, (error, ref) -> {
+            inFlight--;
+            if (error == null) {
+                failures = 0;
+                diskExecutor.execute(() -> store.deleteOutboxEntries(batch));
+                for (Entry entry : batch) {
+                    isolated.remove(entry.message.getKey());
+                }
+                confirm(batch);
+            } else if (error.getCode() == DatabaseError.PERMISSION_DENIED) {
+                // retrying will not help, find and drop the message the rules refuse
+                if (batch.size() > 1) {
+                    for (Entry entry : batch) {
+                        isolated.add(entry.message.getKey());
+                    }
+                    queue.addAll(0, batch);
+                } else {
+                    drop(batch.get(0), error);
+                }
+            } else {
+                queue.addAll(0, batch);
+                failures++;
+            }
+
+            if (inFlight == 0 && !queue.isEmpty()) {
+                scheduleFlush(failures == 0
+                        ? COALESCE_DELAY_MS
+                        : Math.min(MAX_BACKOFF_MS, 1000L << Math.min(failures - 1, 6)));
+            }
+        });
+    }
+
+    private void drop(Entry entry, DatabaseError error) {
+        Log.w(TAG, "Dropping message " + entry.message.getKey() + " to " + entry.groupName
+                + ": " + error.getMessage());
+        isolated.remove(entry.message.getKey());
+        List<Entry> dropped = new ArrayList<>();
+        dropped.add(entry);
+        diskExecutor.execute(() -> store.deleteOutboxEntries(dropped));
+        listener.onFailed(entry.groupName, entry.message.getKey());
+    }
+
+    private void confirm(List<Entry> batch) {
+        Map<String, List<String>> keysByGroup = new HashMap<>();
+        for (Entry entry : batch) {
+            List<String> keys = keysByGroup.get(entry.groupName);
+            if (keys == null) {
+                keys = new ArrayList<>();
+                keysByGroup.put(entry.groupName, keys);
+            }
+            keys.add(entry.message.getKey());
+        }
+        for (Map.Entry<String, List<String>> group : keysByGroup.entrySet()) {
+            listener.onConfirmed(group.getKey(), group.getValue());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.surajvanshsv.chatapp.Repository;
+
+// How much of a group's history a MessageStream keeps in memory
+public class PagingConfig {
+
+    public static final PagingConfig DEFAULT = new PagingConfig(50, 10, 4);
+
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final int maxPages;
+
+    // pageSize: messages per request
+    // prefetchDistance: load the next page when this close to either end of the loaded messages
+    // maxPages: pages beyond this many are dropped, whole, from the end farther from the viewport
+    public PagingConfig(int pageSize, int prefetchDistance, int maxPages) {
+        if (pageSize <= 0 || prefetchDistance < 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("Invalid paging config");
+        }
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.maxPages = maxPages;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPrefetchDistance() {
+        return prefetchDistance;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    public int getMaxLoaded() {
+        return pageSize * maxPages;
+    }
+}
@@ -0,0 +1,264 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import com.surajvanshsv.chatapp.model.Presence;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Typing and online state of one group's chat, at presence/{groupName}/{uid} -> { typing, since }.
+// Only members with the chat open have an entry (removed on leave and by
+// onDisconnect), and the whole group is observed with one child listener on
+// that node, so a big group costs one listener and one small event per change.
+// since is the server time of the entry's last write.
+// The server runs onDisconnect once per connection, so every time .info/connected
+// turns true it is armed again and the whole entry is written again.
+// The listener is shared and kept for the registry's grace period, the own
+// entry is not: it only exists while a subscriber has joined, and the last
+// one to leave removes it right away.
+// Typing is throttled: at most one write per WRITE_INTERVAL_MS, carrying the
+// latest state, however fast the keystrokes come. Main thread only.
+public class PresenceChannel implements StreamRegistry.SharedStream {
+
+    static final long WRITE_INTERVAL_MS = 2_000;
+    // no keystroke for this long counts as stopped typing
+    static final long TYPING_TIMEOUT_MS = 5_000;
+
+    private final DatabaseReference presenceReference;
+    private final DatabaseReference connectedReference;
+    private final String currentUserId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // uid -> typing, everyone in the chat
+    private final Map<String, Boolean> members = new HashMap<>();
+    private final MutableLiveData<Presence> presence = new MutableLiveData<>(Presence.EMPTY);
+    private boolean started;
+    private boolean connected;
+    // subscribers with the chat open, the own entry exists while there are any
+    private int joined;
+
+    private boolean wantTyping;
+    private boolean sentTyping;
+    private long lastWriteAt;
+    private boolean writeScheduled;
+    private boolean publishScheduled;
+
+    private final Runnable writeRunnable = this::writeTyping;
+    private final Runnable typingTimeout = () -> requestTyping(false);
+    private final Runnable publishRunnable = this::publish;
+
+    PresenceChannel(DatabaseReference presenceReference, String currentUserId) {
+        this.presenceReference = presenceReference;
+        this.currentUserId = currentUserId;
+        this.connectedReference = presenceReference.getRoot().child(".info/connected");
+    }
+
+    @Override
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        sentTyping = false;
+
+        if (currentUserId != null) {
+            // the entry is written once connected, then after every reconnect
+            connectedReference.addValueEventListener(connectedListener);
+        }
+        presenceReference.addChildEventListener(listener);
+    }
+
+    @Override
+    public boolean isAttached() {
+        return started;
+    }
+
+    @Override
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        connected = false;
+        presenceReference.removeEventListener(listener);
+        if (currentUserId != null) {
+            connectedReference.removeEventListener(connectedListener);
+        }
+        mainHandler.removeCallbacks(writeRunnable);
+        mainHandler.removeCallbacks(typingTimeout);
+        writeScheduled = false;
+        wantTyping = false;
+
+        removeOwnEntry();
+        members.clear();
+        schedulePublish();
+    }
+
+    // The own entry is written (once connected) while at least one subscriber has joined
+    void join() {
+        joined++;
+        if (joined == 1 && started && connected) {
+            writeOwnEntry();
+        }
+    }
+
+    // The last subscriber leaving takes the user offline and stops typing at once
+    void leave() {
+        if (joined == 0) {
+            return;
+        }
+        joined--;
+        if (joined > 0) {
+            return;
+        }
+        mainHandler.removeCallbacks(writeRunnable);
+        mainHandler.removeCallbacks(typingTimeout);
+        writeScheduled = false;
+        wantTyping = false;
+        sentTyping = false;
+        if (started) {
+            removeOwnEntry();
+        }
+    }
+
+    private void removeOwnEntry() {
+        if (currentUserId != null) {
+            DatabaseReference own = presenceReference.child(currentUserId);
+            own.onDisconnect().cancel();
+            own.removeValue();
+        }
+    }
+
+    // the last connection's onDisconnect may have run, arm it again and bring
+    // the entry back with the latest typing state
+    private void writeOwnEntry() {
+        presenceReference.child(currentUserId).onDisconnect().removeValue();
+        sentTyping = wantTyping;
+        writeEntry();
+    }
+
+    public LiveData<Presence> getPresence() {
+        return presence;
+    }
+
+    // Called on every keystroke with whether the input has text
+    public void onTyping(boolean hasText) {
+        mainHandler.removeCallbacks(typingTimeout);
+        if (hasText) {
+            mainHandler.postDelayed(typingTimeout, TYPING_TIMEOUT_MS);
+        }
+        requestTyping(hasText);
+    }
+
+    // Whatever is wanted when the interval is over is what gets written
+    private void requestTyping(boolean typing) {
+        wantTyping = typing;
+        if (!started || joined == 0 || currentUserId == null || writeScheduled || wantTyping == sentTyping) {
+            return;
+        }
+        writeScheduled = true;
+        long wait = lastWriteAt + WRITE_INTERVAL_MS - SystemClock.elapsedRealtime();
+        mainHandler.postDelayed(writeRunnable, Math.max(0, wait));
+    }
+
+    private void writeTyping() {
+        writeScheduled = false;
+        if (!started || joined == 0 || wantTyping == sentTyping) {
+            return;
+        }
+        sentTyping = wantTyping;
+        if (!connected) {
+            // written with the whole entry on reconnect
+            return;
+        }
+        writeEntry();
+    }
+
+    // Both fields in one update: an entry onDisconnect removed meanwhile comes
+    // back whole, never as a lone typing flag
+    private void writeEntry() {
+        lastWriteAt = SystemClock.elapsedRealtime();
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("typing", sentTyping);
+        entry.put("since", ServerValue.TIMESTAMP);
+        presenceReference.child(currentUserId).updateChildren(entry);
+    }
+
+    // The initial load brings one event per member, the UI gets one update for all of them
+    private void schedulePublish() {
+        if (!publishScheduled) {
+            publishScheduled = true;
+            mainHandler.post(publishRunnable);
+        }
+    }
+
+    private void publish() {
+        publishScheduled = false;
+        int typing = 0;
+        for (Map.Entry<String, Boolean> member : members.entrySet()) {
+            if (member.getValue() && !member.getKey().equals(currentUserId)) {
+                typing++;
+            }
+        }
+        presence.setValue(new Presence(members.size(), typing));
+    }
+
+    private final ValueEventListener connectedListener = new ValueEventListener() {
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Boolean value = snapshot.getValue(Boolean.class);
+            connected = value != null && value;
+            if (started && connected && joined > 0) {
+                writeOwnEntry();
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+        }
+    };
+
+    private final ChildEventListener listener = new ChildEventListener() {
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            Boolean typing = snapshot.child("typing").getValue(Boolean.class);
+            members.put(snapshot.getKey(), typing != null && typing);
+            schedulePublish();
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            onChildAdded(snapshot, previousChildName);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            if (members.remove(snapshot.getKey()) != null) {
+                schedulePublish();
+            }
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            stop();
+        }
+    };
+}
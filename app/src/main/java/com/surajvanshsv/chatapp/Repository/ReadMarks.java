@@ -0,0 +1,59 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Per-group read high-water marks of this user: the group's messageCount
+// (from the directory summary) at the time the group was last read.
+// Unread = summary count - mark, so a badge never needs the messages.
+// Marks live in SharedPreferences and are mirrored in memory. Main thread only.
+class ReadMarks {
+
+    private static final String PREFS_NAME = "read_marks";
+
+    private final SharedPreferences prefs;
+    private final Map<String, Long> marks = new HashMap<>();
+    // the group on screen right now, everything arriving there is read
+    private String openGroup;
+
+    ReadMarks(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof Long) {
+                marks.put(entry.getKey(), (Long) entry.getValue());
+            }
+        }
+    }
+
+    long getReadCount(String groupName) {
+        Long mark = marks.get(groupName);
+        return mark != null ? mark : 0L;
+    }
+
+    // only ever moves forward
+    void markRead(String groupName, long messageCount) {
+        if (messageCount <= getReadCount(groupName)) {
+            return;
+        }
+        marks.put(groupName, messageCount);
+        prefs.edit().putLong(groupName, messageCount).apply();
+    }
+
+    long getUnreadCount(String groupName, long messageCount) {
+        if (groupName.equals(openGroup)) {
+            markRead(groupName, messageCount);
+        }
+        return Math.max(0L, messageCount - getReadCount(groupName));
+    }
+
+    void setOpenGroup(String groupName) {
+        openGroup = groupName;
+    }
+
+    String getOpenGroup() {
+        return openGroup;
+    }
+}
@@ -4,8 +4,12 @@ import android.content.Context;
 import android.content.Intent;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ProcessLifecycleOwner;
 
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
@@ -15,48 +19,182 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
 import com.google.firebase.database.ValueEventListener;
-import com.surajvanshsv.chatapp.model.ChatGroup;
+import com.surajvanshsv.chatapp.StartupTrace;
+import com.surajvanshsv.chatapp.metrics.DataMetrics;
 import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.search.SearchHit;
 import com.surajvanshsv.chatapp.views.GroupsActvity;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
+// Process-wide data layer, get it with getInstance()
 public class Repository {
 
-    MutableLiveData<List<ChatGroup>> chatGroupMutableLiveData ;
+    private static Repository instance;
+
+    // group directory: groups/{groupName} -> { createdAt }, kept apart from the message nodes
+    static final String GROUPS_NODE = "groups";
+    // presence/{groupName}/{uid} -> { typing, since }, see PresenceChannel
+    static final String PRESENCE_NODE = "presence";
+
     FirebaseDatabase database;
     DatabaseReference reference;
-    DatabaseReference groupReference;
+    DatabaseReference groupsReference;
+    private boolean backfillStarted;
+
+    // Subscribe to the group directory while a new user is still signing in,
+    // instead of after. Needs read rules that let the listener wait for auth
+    // (a denied listener is simply attached again by the groups screen).
+    static final boolean SUBSCRIBE_GROUPS_DURING_SIGN_IN = true;
+
+    // uid of the signed-in user, kept current by an AuthStateListener
+    private volatile String currentUserId;
+
+    // local cache, only touched from diskExecutor
+    LocalStore localStore;
+    MessageSearch messageSearch;
+    Executor diskExecutor;
+    ReadMarks readMarks;
+
+    // shared Firebase listeners, one per path
+    private final StreamRegistry streams = new StreamRegistry(this::onStreamStopped);
+    // message streams that were closed recently, ready to be resumed
+    private final MessageStreamCache warmStreams =
+            new MessageStreamCache(MessageStreamCache.MAX_GROUPS, MessageStreamCache.MAX_BYTES);
+    // messages written on this device that the server does not have yet
+    private final Outbox outbox;
+    // moves flat groups into day buckets, see MessageLayout
+    private final DayBucketMigration migration;
+    // snapshot sizes, decode times and emissions, per group
+    private final DataMetrics metrics = new DataMetrics();
+    // decodes snapshots off the main thread
+    private final Ingestion ingestion = new Ingestion(metrics);
+
+    public static synchronized Repository getInstance(Context context) {
+        if (instance == null) {
+            instance = new Repository(context.getApplicationContext());
+        }
+        return instance;
+    }
 
-    MutableLiveData<List<ChatMessage>> messagesLiveData;
+    private Repository(Context context){
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        currentUserId = auth.getUid();
 
-    public Repository(){
-        this.chatGroupMutableLiveData = new MutableLiveData<>();
         database = FirebaseDatabase.getInstance();
         reference = database.getReference();
-        messagesLiveData = new MutableLiveData<>();
+        groupsReference = reference.child(GROUPS_NODE);
+        localStore = new LocalStore(context);
+        messageSearch = new MessageSearch(context, localStore);
+        diskExecutor = Executors.newSingleThreadExecutor();
+        readMarks = new ReadMarks(context);
+        outbox = new Outbox(reference, localStore, diskExecutor, new Outbox.Listener() {
+            @Override
+            public void onPending(String groupName, ChatMessage message) {
+                MessageStream stream = findMessageStream(groupName);
+                if (stream != null) {
+                    stream.addPending(message);
+                }
+            }
+
+            @Override
+            public void onConfirmed(String groupName, List<String> keys) {
+                MessageStream stream = findMessageStream(groupName);
+                if (stream != null) {
+                    stream.confirm(keys);
+                }
+            }
+
+            @Override
+            public void onFailed(String groupName, String key) {
+                MessageStream stream = findMessageStream(groupName);
+                if (stream != null) {
+                    stream.fail(key);
+                }
+            }
+        });
+        outbox.restore();
+        migration = new DayBucketMigration(reference, context);
+
+        // No screen visible, no listeners: streams pause with the app and on
+        // return only fetch what is newer than what they hold
+        ProcessLifecycleOwner.get().getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onStart(@NonNull LifecycleOwner owner) {
+                streams.resumeAll();
+            }
+
+            @Override
+            public void onStop(@NonNull LifecycleOwner owner) {
+                streams.pauseAll();
+            }
+        });
 
+        auth.addAuthStateListener(new FirebaseAuth.AuthStateListener() {
+            @Override
+            public void onAuthStateChanged(@NonNull FirebaseAuth firebaseAuth) {
+                currentUserId = firebaseAuth.getUid();
+                if (currentUserId != null && MessageLayout.DAY_BUCKETS) {
+                    migration.runOnce(currentUserId);
+                }
+            }
+        });
     }
 
 
 
 // authentication
+    // A session restored from disk is reused, sign-in only happens without one
     public void firebaseAnonymousAuth(Context context){
+        if (isSignedIn()) {
+            openGroups(context);
+            return;
+        }
+
+        if (SUBSCRIBE_GROUPS_DURING_SIGN_IN) {
+            // held until sign-in is done, the groups screen takes over within the grace period
+            acquireGroupStream();
+        }
         FirebaseAuth.getInstance().signInAnonymously().addOnCompleteListener(new OnCompleteListener<AuthResult>() {
             @Override
             public void onComplete(@NonNull Task<AuthResult> task) {
                 if(task.isSuccessful()){
-                    Intent i = new Intent(context, GroupsActvity.class);
-                    i.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    context.startActivity(i);
+                    // the listener may not have run yet
+                    currentUserId = FirebaseAuth.getInstance().getUid();
+                    openGroups(context);
+                }
+                if (SUBSCRIBE_GROUPS_DURING_SIGN_IN) {
+                    releaseGroupStream();
                 }
             }
         });
     }
+
+    private void openGroups(Context context) {
+        Intent i = new Intent(context, GroupsActvity.class);
+        i.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        context.startActivity(i);
+    }
+
+    public boolean isSignedIn(){
+        return FirebaseAuth.getInstance().getCurrentUser() != null;
+    }
+
+    // cached, no FirebaseAuth lookup per call
     public String getCurrentUserId(){
-        return FirebaseAuth.getInstance().getUid();
+        return currentUserId;
     }
 
     public void signOUT(){
@@ -64,68 +202,241 @@ public class Repository {
     }
 
     // getting chatgroups available from firebase database
+    // Only the group directory is followed, message data never comes down with it
+    // Every acquire must be paired with releaseGroupStream()
+    public GroupStream acquireGroupStream() {
+        return streams.acquire(GROUPS_NODE, () -> new GroupStream(groupsReference, localStore, diskExecutor,
+                readMarks, this::backfillGroupDirectory, metrics, ingestion));
+    }
+
+    public void releaseGroupStream() {
+        streams.release(GROUPS_NODE);
+    }
+
+    // Unread counts: while a group is on screen, everything in it counts as read
+    public void openGroup(String groupName) {
+        readMarks.setOpenGroup(groupName);
+        markGroupRead(groupName);
+    }
+
+    public void closeGroup(String groupName) {
+        markGroupRead(groupName);
+        if (groupName.equals(readMarks.getOpenGroup())) {
+            readMarks.setOpenGroup(null);
+        }
+    }
+
+    private void markGroupRead(String groupName) {
+        StreamRegistry.SharedStream groupStream = streams.get(GROUPS_NODE);
+        if (groupStream instanceof GroupStream) {
+            ((GroupStream) groupStream).markRead(groupName);
+        }
+    }
+
+    // Creating a new group
+    // Only the directory entry is written, the message node appears with the first message
+    // A transaction, so that an existing group (its summary, and a flat layout
+    // not migrated yet) is left as it is instead of being overwritten
+    public void createNewChatGroup(String groupName){
+        if (MessageLayout.isReservedNode(groupName)) {
+            return;
+        }
+        Map<String, Object> entry = directoryEntry();
+        if (MessageLayout.DAY_BUCKETS) {
+            // born bucketed, nothing to migrate
+            entry.put(MessageLayout.LAYOUT_FIELD, MessageLayout.LAYOUT_DAYS);
+        }
+        groupsReference.child(groupName).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                if (currentData.getValue() != null) {
+                    return Transaction.abort();
+                }
+                currentData.setValue(entry);
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed,
+                                   @Nullable DataSnapshot currentData) {
+                // not committed: the group already exists, nothing to do
+            }
+        });
+    }
 
+    private Map<String, Object> directoryEntry() {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("createdAt", ServerValue.TIMESTAMP);
+        // a resuming GroupStream only asks for groups by lastActivity
+        entry.put("lastActivity", ServerValue.TIMESTAMP);
+        return entry;
+    }
+
+    // One-time copy of the groups created before the directory existed.
+    // This is the only place that still reads the whole root.
+    private void backfillGroupDirectory() {
+        if (backfillStarted) {
+            return;
+        }
+        backfillStarted = true;
 
-    public MutableLiveData<List<ChatGroup>> getChatGroupMutableLiveData() {
-        List<ChatGroup> groupList = new ArrayList<>();
-        reference.addValueEventListener(new ValueEventListener() {
+        reference.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                groupList.clear();
-                for(DataSnapshot dataSnapshot: snapshot.getChildren() ){
-                    ChatGroup group = new ChatGroup(dataSnapshot.getKey());
-                    groupList.add(group);
-
+                Map<String, Object> updates = new HashMap<>();
+                for (DataSnapshot dataSnapshot : snapshot.getChildren()) {
+                    String groupName = dataSnapshot.getKey();
+                    if (!MessageLayout.isReservedNode(groupName)) {
+                        // leaf paths, a summary another client wrote meanwhile stays
+                        for (Map.Entry<String, Object> field : directoryEntry().entrySet()) {
+                            updates.put(groupName + "/" + field.getKey(), field.getValue());
+                        }
+                    }
+                }
+                if (!updates.isEmpty()) {
+                    groupsReference.updateChildren(updates);
                 }
-                chatGroupMutableLiveData.postValue(groupList);
             }
 
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
+                backfillStarted = false;
+            }
+        });
+    }
 
+    // Streaming the messages of a group, newest page first
+    // All screens showing the group share one stream and one listener
+    // A recently closed group comes back from the warm cache with its messages
+    // and only fetches what is newer
+    // Every acquire must be paired with releaseMessageStream()
+    public MessageStream acquireMessageStream(String groupName) {
+        return streams.acquire(groupName, () -> {
+            MessageStream warm = warmStreams.take(groupName);
+            if (warm != null) {
+                return warm;
             }
+            return new MessageStream(groupName,
+                    MessageLayout.source(reference, groupName), PagingConfig.DEFAULT,
+                    localStore, messageSearch, diskExecutor, getCurrentUserId(), metrics, ingestion);
         });
+    }
 
-        return chatGroupMutableLiveData;
+    private void onStreamStopped(String path, StreamRegistry.SharedStream stream) {
+        if (stream instanceof MessageStream) {
+            warmStreams.put(path, (MessageStream) stream);
+            diskExecutor.execute(messageSearch::save);
+        }
     }
 
-    // Creating a new group
-    public void createNewChatGroup(String groupName){
-        reference.child(groupName).setValue(groupName);
+    public void releaseMessageStream(String groupName) {
+        streams.release(groupName);
+    }
 
+    // the open or warm stream of the group, without acquiring it
+    private MessageStream findMessageStream(String groupName) {
+        StreamRegistry.SharedStream open = streams.get(groupName);
+        if (open instanceof MessageStream) {
+            return (MessageStream) open;
+        }
+        return warmStreams.peek(groupName);
     }
 
-    // Getting Messages Live Data
-    public MutableLiveData<List<ChatMessage>> getMessagesLiveData(String groupName) {
-        // child(groupName): used to specify a child node under the root reference
-        groupReference = database.getReference().child(groupName);
+    // Typing and online state of a group's chat, one listener per group
+    // Every acquire must be paired with releasePresence()
+    public PresenceChannel acquirePresence(String groupName) {
+        PresenceChannel channel = streams.acquire(PRESENCE_NODE + "/" + groupName, () -> new PresenceChannel(
+                reference.child(PRESENCE_NODE).child(groupName), getCurrentUserId()));
+        channel.join();
+        return channel;
+    }
 
-        List<ChatMessage> messagesList = new ArrayList<>();
+    // The user is gone from the chat right away, only the listener waits out the grace period
+    public void releasePresence(String groupName) {
+        String path = PRESENCE_NODE + "/" + groupName;
+        StreamRegistry.SharedStream channel = streams.get(path);
+        if (channel instanceof PresenceChannel) {
+            ((PresenceChannel) channel).leave();
+        }
+        streams.release(path);
+    }
 
-        groupReference.addValueEventListener(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                messagesList.clear();
+    // Searching the messages cached on this device, across all groups, best hit first
+    // The query runs on the disk executor and the hits are posted once
+    public LiveData<List<SearchHit>> searchMessages(String query, int limit) {
+        MutableLiveData<List<SearchHit>> hits = new MutableLiveData<>();
+        diskExecutor.execute(() -> hits.postValue(messageSearch.search(query, limit)));
+        return hits;
+    }
+
+    // Leak checks: listeners still attached, and subscribers per path
+    public int getActiveListenerCount() {
+        return streams.getActiveListenerCount();
+    }
 
+    public Map<String, Integer> getStreamSubscriberCounts() {
+        return streams.getSubscriberCounts();
+    }
 
-                for (DataSnapshot dataSnapshot : snapshot.getChildren()){
-                    ChatMessage message = dataSnapshot.getValue(ChatMessage.class);
-                    messagesList.add(message);
-                }
+    // Warm cache metrics
+    public long getWarmCacheHits() {
+        return warmStreams.getHitCount();
+    }
 
-                messagesLiveData.postValue(messagesList);
+    public long getWarmCacheMisses() {
+        return warmStreams.getMissCount();
+    }
 
-            }
+    public double getWarmCacheHitRate() {
+        return warmStreams.getHitRate();
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+    // Everything above plus the startup phases and the per-group data metrics,
+    // as plain text for the debug screen
+    public String getMetricsReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("active listeners  ").append(getActiveListenerCount()).append('\n');
+        for (Map.Entry<String, Integer> entry : getStreamSubscriberCounts().entrySet()) {
+            report.append("  ").append(entry.getKey()).append(": ")
+                    .append(entry.getValue()).append(" subscribers\n");
+        }
+        report.append("ingestion queue   ").append(ingestion.getQueueDepth()).append(" waiting\n");
+        report.append("warm cache        ").append(getWarmCacheHits()).append(" hits, ")
+                .append(getWarmCacheMisses()).append(" misses\n");
+        report.append("startup\n");
+        for (Map.Entry<String, Long> phase : StartupTrace.getPhases().entrySet()) {
+            report.append("  ").append(phase.getKey()).append(": ")
+                    .append(phase.getValue()).append(" ms\n");
+        }
+        report.append('\n');
+        metrics.dump(report);
+        return report.toString();
+    }
 
+    public void resetMetrics() {
+        metrics.reset();
+    }
+
+    // Writes the report to the file on the disk executor, the callback gets
+    // the file or null and runs on that executor
+    public void dumpMetrics(File file, MetricsDumpCallback callback) {
+        String report = getMetricsReport();
+        diskExecutor.execute(() -> {
+            try (Writer writer = new FileWriter(file)) {
+                writer.write(report);
+                callback.onDumped(file);
+            } catch (IOException e) {
+                callback.onDumped(null);
             }
         });
+    }
 
-        return messagesLiveData;
+    public interface MetricsDumpCallback {
+        void onDumped(File file);
     }
 
+    // The message shows up at once as pending and goes out with the next outbox flush
     public void sendMessage(String messageText, String chatGroup){
 
         DatabaseReference ref = database
@@ -134,14 +445,15 @@ public class Repository {
 
         if (!messageText.trim().equals("")){
             ChatMessage msg = new ChatMessage(
-                    FirebaseAuth.getInstance().getCurrentUser().getUid(),
+                    getCurrentUserId(),
                     messageText,
                     System.currentTimeMillis()
             );
 
-            String randomKey = ref.push().getKey();
+            // push keys are generated locally, no round trip needed
+            msg.setKey(ref.push().getKey());
 
-            ref.child(randomKey).setValue(msg);
+            outbox.enqueue(chatGroup, msg);
 
         }
     }
@@ -0,0 +1,130 @@
+package com.surajvanshsv.chatapp.Repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Hands out one shared stream per database path and counts its subscribers.
+// When the last subscriber leaves, the stream keeps its Firebase listener for
+// a grace period (screen rotation, quick back and forth between groups) and
+// is only stopped if nobody comes back in time. While the app is in the
+// background every stream is paused, and resumed when a screen shows again.
+// Main thread only.
+class StreamRegistry {
+
+    // the streams managed here
+    interface SharedStream {
+        void start();
+
+        void stop();
+
+        boolean isAttached();
+    }
+
+    // told about every stream that was stopped after its grace period
+    interface OnStreamStopped {
+        void onStreamStopped(String path, SharedStream stream);
+    }
+
+    static final long GRACE_PERIOD_MS = 10_000;
+
+    private static class Entry {
+        final SharedStream stream;
+        int subscribers;
+        Runnable pendingStop;
+
+        Entry(SharedStream stream) {
+            this.stream = stream;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final OnStreamStopped onStreamStopped;
+    private boolean paused;
+
+    StreamRegistry(OnStreamStopped onStreamStopped) {
+        this.onStreamStopped = onStreamStopped;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends SharedStream> T acquire(String path, Supplier<T> factory) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            entry = new Entry(factory.get());
+            entries.put(path, entry);
+        }
+        if (entry.pendingStop != null) {
+            mainHandler.removeCallbacks(entry.pendingStop);
+            entry.pendingStop = null;
+        }
+        entry.subscribers++;
+        if (!paused) {
+            entry.stream.start();
+        }
+        return (T) entry.stream;
+    }
+
+    void release(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null || entry.subscribers == 0) {
+            return;
+        }
+        entry.subscribers--;
+        if (entry.subscribers == 0) {
+            entry.pendingStop = () -> {
+                entry.pendingStop = null;
+                entry.stream.stop();
+                entries.remove(path);
+                onStreamStopped.onStreamStopped(path, entry.stream);
+            };
+            mainHandler.postDelayed(entry.pendingStop, GRACE_PERIOD_MS);
+        }
+    }
+
+    // No screen is visible: detach every listener, the streams keep their data
+    void pauseAll() {
+        paused = true;
+        for (Entry entry : entries.values()) {
+            entry.stream.stop();
+        }
+    }
+
+    // Streams that still have subscribers attach again and catch up from where they stopped
+    void resumeAll() {
+        paused = false;
+        for (Entry entry : entries.values()) {
+            if (entry.subscribers > 0) {
+                entry.stream.start();
+            }
+        }
+    }
+
+    // the stream registered for the path, or null, subscribers are not counted
+    SharedStream get(String path) {
+        Entry entry = entries.get(path);
+        return entry == null ? null : entry.stream;
+    }
+
+    // streams that currently hold a Firebase listener, including those in their grace period
+    int getActiveListenerCount() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.stream.isAttached()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    Map<String, Integer> getSubscriberCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().subscribers);
+        }
+        return counts;
+    }
+}
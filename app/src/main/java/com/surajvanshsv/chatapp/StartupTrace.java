@@ -0,0 +1,44 @@
+package com.surajvanshsv.chatapp;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Milestones of a cold start, in ms since the process was started.
+// Each phase is recorded once, the first time it is reached, and logged
+// under the StartupTrace tag: `adb logcat -s StartupTrace`. The metrics
+// report lists them too.
+public final class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    public static final String LAUNCHER_CREATED = "launcher_created";
+    public static final String REPOSITORY_READY = "repository_ready";
+    public static final String AUTH_READY = "auth_ready";
+    public static final String GROUPS_READY = "groups_ready";
+    public static final String LAUNCHER_DONE = "launcher_done";
+    // first groups on screen, the app is usable
+    public static final String INTERACTIVE = "interactive";
+
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private StartupTrace() {
+    }
+
+    public static synchronized void mark(String phase) {
+        if (phases.containsKey(phase)) {
+            return;
+        }
+        long sinceStart = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        phases.put(phase, sinceStart);
+        Log.i(TAG, phase + " at " + sinceStart + " ms");
+    }
+
+    // phases reached so far, in order
+    public static synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+}
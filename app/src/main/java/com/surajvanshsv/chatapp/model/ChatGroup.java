@@ -1,18 +0,0 @@
-package com.surajvanshsv.chatapp.model;
-
-public class ChatGroup {
-
-    String groupName;
-
-    public ChatGroup(String groupName) {
-        this.groupName = groupName;
-    }
-
-    public String getGroupName() {
-        return groupName;
-    }
-
-    public void setGroupName(String groupName) {
-        this.groupName = groupName;
-    }
-}
@@ -4,21 +4,35 @@ import android.app.Application;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
-import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.LiveData;
 
+import com.surajvanshsv.chatapp.Repository.GroupStream;
+import com.surajvanshsv.chatapp.Repository.MessageStream;
+import com.surajvanshsv.chatapp.Repository.PresenceChannel;
 import com.surajvanshsv.chatapp.Repository.Repository;
 import com.surajvanshsv.chatapp.model.ChatGroup;
-import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.GroupEvent;
+import com.surajvanshsv.chatapp.model.MessageEvent;
+import com.surajvanshsv.chatapp.model.MessageRow;
+import com.surajvanshsv.chatapp.model.Presence;
+import com.surajvanshsv.chatapp.search.SearchHit;
 
 import java.util.List;
 
 public class MyViewModel extends AndroidViewModel {
 
+    static final int SEARCH_LIMIT = 50;
+
     Repository repository;
+    MessageStream messageStream;
+    String messageGroupName;
+    GroupStream groupStream;
+    PresenceChannel presenceChannel;
+    String presenceGroupName;
 
     public MyViewModel(@NonNull Application application) {
         super(application);
-        repository = new Repository();
+        repository = Repository.getInstance(application);
 
     }
 
@@ -30,8 +44,25 @@ public class MyViewModel extends AndroidViewModel {
 
 
     // getting chat groups
-    public MutableLiveData<List<ChatGroup>> getGroupList (){
-        return repository.getChatGroupMutableLiveData();
+    private GroupStream getGroupStream(){
+        if (groupStream == null){
+            groupStream = repository.acquireGroupStream();
+        }
+        return groupStream;
+    }
+
+    public List<ChatGroup> getGroups(){
+        return getGroupStream().getGroups();
+    }
+
+    // one event per added, changed or removed group
+    public LiveData<GroupEvent> getGroupEvents(){
+        return getGroupStream().getEvents();
+    }
+
+    // groups matching a name typed into the search box that are not loaded yet
+    public void searchGroups(String prefix){
+        getGroupStream().searchRemote(prefix);
     }
 
     public void createNewGroup(String groupName){
@@ -40,12 +71,82 @@ public class MyViewModel extends AndroidViewModel {
 
     //
     // Messages
-    public MutableLiveData<List<ChatMessage>> getMessagesLiveData(String groupName){
-        return repository.getMessagesLiveData(groupName);
+    private MessageStream getMessageStream(String groupName){
+        if (messageStream == null){
+            messageStream = repository.acquireMessageStream(groupName);
+            messageGroupName = groupName;
+        }
+        return messageStream;
+    }
+
+    // current messages of the group, kept up to date by the stream
+    public List<MessageRow> getMessages(String groupName){
+        return getMessageStream(groupName).getMessages();
+    }
+
+    // one event per inserted, updated or removed message
+    public LiveData<MessageEvent> getMessageEvents(String groupName){
+        return getMessageStream(groupName).getEvents();
+    }
+
+    // lets the stream fetch pages near the viewport or drop the ones far off screen
+    public void onMessagesScrolled(int firstVisiblePosition, int lastVisiblePosition){
+        if (messageStream != null){
+            messageStream.onViewportChanged(firstVisiblePosition, lastVisiblePosition);
+        }
+    }
+
+    // the group is on screen, its messages count as read
+    public void onChatVisible(String groupName){
+        repository.openGroup(groupName);
+    }
+
+    public void onChatHidden(String groupName){
+        repository.closeGroup(groupName);
+    }
+
+    //
+    // Presence
+    private PresenceChannel getPresenceChannel(String groupName){
+        if (presenceChannel == null){
+            presenceChannel = repository.acquirePresence(groupName);
+            presenceGroupName = groupName;
+        }
+        return presenceChannel;
+    }
+
+    // online and typing counts of the group's chat
+    public LiveData<Presence> getPresence(String groupName){
+        return getPresenceChannel(groupName).getPresence();
+    }
+
+    // every keystroke, the channel throttles what reaches the server
+    public void onTyping(String groupName, boolean hasText){
+        getPresenceChannel(groupName).onTyping(hasText);
+    }
+
+    // on-device message search over every cached group
+    public LiveData<List<SearchHit>> searchMessages(String query){
+        return repository.searchMessages(query, SEARCH_LIMIT);
     }
 
     public void sendMessage(String msg, String chatGroup){
         repository.sendMessage(msg,chatGroup);
     }
 
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        // Streams are shared, let the repository decide when to detach them
+        if (messageStream != null){
+            repository.releaseMessageStream(messageGroupName);
+        }
+        if (groupStream != null){
+            repository.releaseGroupStream();
+        }
+        if (presenceChannel != null){
+            repository.releasePresence(presenceGroupName);
+        }
+    }
+
 }
@@ -4,7 +4,6 @@ import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.graphics.drawable.AnimationDrawable;
 import android.os.Bundle;
-import android.os.Handler;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.View;
@@ -26,7 +25,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.surajvanshsv.chatapp.R;
 import com.surajvanshsv.chatapp.databinding.ActivityChatBinding;
-import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.MessageEvent;
+import com.surajvanshsv.chatapp.model.MessageRow;
+import com.surajvanshsv.chatapp.model.Presence;
 import com.surajvanshsv.chatapp.viewmodel.MyViewModel;
 import com.surajvanshsv.chatapp.views.adapters.ChatAdapter;
 
@@ -34,16 +35,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class ChatActivity extends AppCompatActivity {
+    // bigger bursts jump to the newest message instead of animating to it
+    private static final int ANIMATED_BURST = 3;
+
     private ActivityChatBinding binding;
     private MyViewModel myViewModel;
     private RecyclerView recyclerView;
     private ChatAdapter myAdapter;
-    private List<ChatMessage> messagesList;
+    // message events, applied to the list once per frame
+    private FrameBatcher<MessageEvent> messageUpdates;
 
     // Animation and UI enhancement variables
-    private Handler handler = new Handler();
-    private Runnable typingRunnable;
-    private boolean isTyping = false;
     private AnimationDrawable neonLineAnimation;
 
     @Override
@@ -59,6 +61,7 @@ public class ChatActivity extends AppCompatActivity {
         initializeAnimations();
         setupRecyclerView();
         setupMessageObserver();
+        setupPresenceObserver();
         setupSendButton();
         setupEditTextAnimations();
         binding.edittextChatMessage.setOnClickListener(new View.OnClickListener() {
@@ -106,6 +109,25 @@ public class ChatActivity extends AppCompatActivity {
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setHasFixedSize(true);
 
+        // A single adapter for the whole screen, updates are diffed into it
+        myAdapter = new ChatAdapter(getApplicationContext());
+        recyclerView.setAdapter(myAdapter);
+
+        // Messages are paged in and out as the user scrolls
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                super.onScrolled(recyclerView, dx, dy);
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                int firstVisible = layoutManager.findFirstVisibleItemPosition();
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (firstVisible != RecyclerView.NO_POSITION) {
+                    // posted, dropping a page can notify the adapter which is not allowed mid-scroll
+                    recyclerView.post(() -> myViewModel.onMessagesScrolled(firstVisible, lastVisible));
+                }
+            }
+        });
+
         // Add fade in animation to RecyclerView
         ObjectAnimator recyclerFadeIn = ObjectAnimator.ofFloat(recyclerView, "alpha", 0f, 1f);
         recyclerFadeIn.setDuration(600);
@@ -116,28 +138,104 @@ public class ChatActivity extends AppCompatActivity {
     private void setupMessageObserver() {
         String groupName = getIntent().getStringExtra("GROUP_NAME");
 
-        myViewModel.getMessagesLiveData(groupName).observe(this, new Observer<List<ChatMessage>>() {
+        messageUpdates = new FrameBatcher<>(getResources().getInteger(R.integer.chat_update_window_ms),
+                batch -> showMessages(groupName, batch));
+        myViewModel.getMessageEvents(groupName).observe(this, new Observer<MessageEvent>() {
             @Override
-            public void onChanged(List<ChatMessage> chatMessages) {
-                messagesList = new ArrayList<>();
-                messagesList.addAll(chatMessages);
+            public void onChanged(MessageEvent event) {
+                messageUpdates.add(event);
+            }
+        });
+    }
+
+    // Other members typing and how many have the chat open
+    private void setupPresenceObserver() {
+        String groupName = getIntent().getStringExtra("GROUP_NAME");
 
-                myAdapter = new ChatAdapter(messagesList, getApplicationContext());
-                recyclerView.setAdapter(myAdapter);
-                myAdapter.notifyDataSetChanged();
+        myViewModel.getPresence(groupName).observe(this, new Observer<Presence>() {
+            @Override
+            public void onChanged(Presence presence) {
+                if (presence.getOnline() > 1) {
+                    binding.presenceText.setText(presence.getOnline() + " online");
+                    binding.presenceText.setVisibility(View.VISIBLE);
+                } else {
+                    binding.presenceText.setVisibility(View.GONE);
+                }
 
-                // Scroll to the latest message with smooth animation
-                int latestPosition = myAdapter.getItemCount() - 1;
-                if (latestPosition > 0) {
-                    recyclerView.smoothScrollToPosition(latestPosition);
+                if (presence.getTyping() > 0) {
+                    binding.typingText.setText(presence.getTyping() == 1
+                            ? "Someone is typing"
+                            : presence.getTyping() + " people are typing");
+                    showTypingIndicator();
+                } else {
+                    hideTypingIndicator();
+                }
+            }
+        });
+    }
 
-                    // Add a subtle bounce effect when new message arrives
-                    animateNewMessage();
+    // All events of one frame become one list update and at most one scroll
+    private void showMessages(String groupName, List<MessageEvent> batch) {
+        // The adapter diffs against what it shows, so it gets a snapshot of the stream's list
+        List<MessageRow> snapshot = new ArrayList<>(myViewModel.getMessages(groupName));
+        List<MessageRow> shown = myAdapter.getCurrentList();
+        boolean firstList = shown.isEmpty();
+        int latestPosition = snapshot.size() - 1;
+        boolean newestArrived = !firstList && latestPosition > 0 && hasInsert(batch)
+                && !snapshot.get(latestPosition).getKey().equals(shown.get(shown.size() - 1).getKey());
+
+        // texts of new messages are measured while the list is diffed
+        myAdapter.prefetchText(firstList ? snapshot : arrivedRows(batch, snapshot));
+        myAdapter.submitList(snapshot, () -> {
+            messageUpdates.frameDone();
+            if (firstList) {
+                // First page of the group, start at the newest message
+                if (latestPosition >= 0) {
+                    recyclerView.scrollToPosition(latestPosition);
                 }
+                return;
+            }
+
+            if (!newestArrived) {
+                return;
+            }
+            if (batch.size() > ANIMATED_BURST) {
+                recyclerView.scrollToPosition(latestPosition);
+                return;
             }
+            // Scroll to the latest message with smooth animation
+            recyclerView.smoothScrollToPosition(latestPosition);
+
+            // Add a subtle bounce effect when new message arrives
+            animateNewMessage();
         });
     }
 
+    // inserted messages and older pages, the rows that will be bound first
+    private static List<MessageRow> arrivedRows(List<MessageEvent> batch, List<MessageRow> snapshot) {
+        List<MessageRow> rows = new ArrayList<>();
+        for (MessageEvent event : batch) {
+            if (event.getType() == MessageEvent.Type.INSERTED && event.getMessage() != null) {
+                rows.add(event.getMessage());
+            } else if (event.getType() == MessageEvent.Type.PAGE_LOADED) {
+                int end = Math.min(snapshot.size(), event.getPosition() + event.getCount());
+                for (int i = Math.max(0, event.getPosition()); i < end; i++) {
+                    rows.add(snapshot.get(i));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static boolean hasInsert(List<MessageEvent> batch) {
+        for (MessageEvent event : batch) {
+            if (event.getType() == MessageEvent.Type.INSERTED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void setupSendButton() {
         binding.setVModel(myViewModel);
 
@@ -154,12 +252,10 @@ public class ChatActivity extends AppCompatActivity {
 
                     // Send message
                     myViewModel.sendMessage(msg, groupName);
+                    myViewModel.onTyping(groupName, false);
 
                     // Clear input with fade animation
                     animateClearInput();
-
-                    // Hide typing indicator
-                    hideTypingIndicator();
                 }
             }
         });
@@ -175,8 +271,8 @@ public class ChatActivity extends AppCompatActivity {
                 // Show/hide send button based on text
                 animateSendButtonVisibility(!s.toString().trim().isEmpty());
 
-                // Simulate typing indicator (you can connect this to real typing events)
-               // handleTypingIndicator(s.length() > 0);
+                // Tell the others, the presence channel throttles the writes
+                myViewModel.onTyping(getIntent().getStringExtra("GROUP_NAME"), s.length() > 0);
             }
 
             @Override
@@ -275,32 +371,6 @@ public class ChatActivity extends AppCompatActivity {
     }
 
 
-    private void handleTypingIndicator(boolean typing) {
-        if (typing && !isTyping) {
-            // Start typing indicator after a short delay
-            handler.removeCallbacks(typingRunnable);
-            typingRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    showTypingIndicator();
-                }
-            };
-            handler.postDelayed(typingRunnable, 500);
-            isTyping = true;
-        } else if (!typing && isTyping) {
-            // Hide typing indicator after user stops typing
-            handler.removeCallbacks(typingRunnable);
-            typingRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    hideTypingIndicator();
-                }
-            };
-            handler.postDelayed(typingRunnable, 1000);
-            isTyping = false;
-        }
-    }
-
     private void showTypingIndicator() {
         View typingIndicator = findViewById(R.id.typing_indicator);
         if (typingIndicator != null && typingIndicator.getVisibility() != View.VISIBLE) {
@@ -343,16 +413,21 @@ public class ChatActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Clean up handler callbacks
-        if (handler != null && typingRunnable != null) {
-            handler.removeCallbacks(typingRunnable);
-        }
+        messageUpdates.cancel();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Messages arriving while the chat is on screen are read
+        myViewModel.onChatVisible(getIntent().getStringExtra("GROUP_NAME"));
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        // Hide typing indicator when activity is paused
-        hideTypingIndicator();
+        // not typing anymore once the chat is left
+        myViewModel.onTyping(getIntent().getStringExtra("GROUP_NAME"), false);
+        myViewModel.onChatHidden(getIntent().getStringExtra("GROUP_NAME"));
     }
 }
\ No newline at end of file
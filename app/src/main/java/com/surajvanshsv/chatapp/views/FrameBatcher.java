@@ -0,0 +1,72 @@
+package com.surajvanshsv.chatapp.views;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Collects UI updates and hands them over once per display frame (or once per
+// window, if one is set), so a burst of events costs one layout pass instead
+// of one per event. At most one batch is being applied at a time: after a
+// flush nothing is handed over until the receiver calls frameDone(), and
+// whatever arrived meanwhile goes in the next frame. Main thread only.
+public class FrameBatcher<T> {
+
+    public interface Receiver<T> {
+        // everything added since the last batch, oldest first; call frameDone() when applied
+        void onBatch(List<T> batch);
+    }
+
+    private final long windowMs;
+    private final Receiver<T> receiver;
+    private final Choreographer choreographer = Choreographer.getInstance();
+
+    private List<T> pending = new ArrayList<>();
+    private boolean scheduled;
+    private boolean applying;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled = false;
+            if (applying || pending.isEmpty()) {
+                return;
+            }
+            List<T> batch = pending;
+            pending = new ArrayList<>();
+            applying = true;
+            receiver.onBatch(batch);
+        }
+    };
+
+    // windowMs 0 means the next frame
+    public FrameBatcher(long windowMs, Receiver<T> receiver) {
+        this.windowMs = windowMs;
+        this.receiver = receiver;
+    }
+
+    public void add(T update) {
+        pending.add(update);
+        schedule();
+    }
+
+    // the last batch is on screen, the next one may go
+    public void frameDone() {
+        applying = false;
+        schedule();
+    }
+
+    public void cancel() {
+        choreographer.removeFrameCallback(frameCallback);
+        scheduled = false;
+        pending.clear();
+    }
+
+    private void schedule() {
+        if (scheduled || applying || pending.isEmpty()) {
+            return;
+        }
+        scheduled = true;
+        choreographer.postFrameCallbackDelayed(frameCallback, windowMs);
+    }
+}
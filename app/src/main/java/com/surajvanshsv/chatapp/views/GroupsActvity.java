@@ -4,8 +4,12 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.app.Dialog;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.os.Handler;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -28,22 +32,20 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.surajvanshsv.chatapp.R;
+import com.surajvanshsv.chatapp.StartupTrace;
 import com.surajvanshsv.chatapp.databinding.ActivityGroupsActvityBinding;
-import com.surajvanshsv.chatapp.model.ChatGroup;
+import com.surajvanshsv.chatapp.model.GroupEvent;
 import com.surajvanshsv.chatapp.viewmodel.MyViewModel;
 import com.surajvanshsv.chatapp.views.adapters.GroupAdapter;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class GroupsActvity extends AppCompatActivity {
-    private ArrayList<ChatGroup> chatGroupArrayList;
     private RecyclerView recyclerView;
     private GroupAdapter groupAdapter;
     private ActivityGroupsActvityBinding binding;
     private MyViewModel myViewModel;
     private Dialog chatGroupDialog;
     private boolean isFirstLoad = true;
+    private long appliedSequence = -1;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -70,6 +72,9 @@ public class GroupsActvity extends AppCompatActivity {
         // Setup observer for data changes
         setupDataObserver();
 
+        // Filter groups by name while typing
+        setupSearch();
+
         // Apply window insets
         ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
             Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
@@ -79,12 +84,29 @@ public class GroupsActvity extends AppCompatActivity {
 
         // Animate header on first load
         animateHeaderEntrance();
+
+        // Debug builds: long-press the header for the data metrics
+        setupMetricsShortcut();
+    }
+
+    private void setupMetricsShortcut() {
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) {
+            return;
+        }
+        binding.imageView2.setOnLongClickListener(v -> {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        });
     }
 
     private void setupRecyclerView() {
         recyclerView = binding.recyclerView;
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
+        // One adapter for the screen, group events are applied to it incrementally
+        groupAdapter = new GroupAdapter(GroupAdapter.SortOrder.LAST_ACTIVITY);
+        recyclerView.setAdapter(groupAdapter);
+
         // Add subtle scroll animations
         recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
@@ -131,34 +153,62 @@ public class GroupsActvity extends AppCompatActivity {
     }
 
     private void setupDataObserver() {
-        myViewModel.getGroupList().observe(this, new Observer<List<ChatGroup>>() {
+        myViewModel.getGroupEvents().observe(this, new Observer<GroupEvent>() {
             @Override
-            public void onChanged(List<ChatGroup> chatGroups) {
-                // The updated data is received as "chatGroups" parameter in onChanged()
-                chatGroupArrayList = new ArrayList<>();
-                chatGroupArrayList.addAll(chatGroups);
-
-                groupAdapter = new GroupAdapter(chatGroupArrayList);
-                recyclerView.setAdapter(groupAdapter);
-
-                // Apply layout animation for smooth item appearances
-                if (isFirstLoad && !chatGroups.isEmpty()) {
-                    recyclerView.setLayoutAnimation(
-                            AnimationUtils.loadLayoutAnimation(GroupsActvity.this, R.anim.neon_layout_animation)
-                    );
-                    isFirstLoad = false;
-                }
+            public void onChanged(GroupEvent event) {
+                applyGroupEvent(event);
+            }
+        });
+    }
 
-                groupAdapter.notifyDataSetChanged();
+    private void setupSearch() {
+        binding.searchGroupsEdt.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-                // Animate RecyclerView entrance if it has items
-                if (!chatGroups.isEmpty()) {
-                    animateRecyclerViewEntrance();
-                }
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                String prefix = s.toString().trim();
+                groupAdapter.setFilter(prefix);
+                myViewModel.searchGroups(prefix);
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
             }
         });
     }
 
+    private void applyGroupEvent(GroupEvent event) {
+        if (event.getSequence() <= appliedSequence) {
+            return;
+        }
+
+        if (event.getType() == GroupEvent.Type.RESET || event.getSequence() != appliedSequence + 1) {
+            // First event, a bulk change, or events missed while stopped: reload from the stream
+            groupAdapter.replaceAll(myViewModel.getGroups());
+        } else if (event.getType() == GroupEvent.Type.REMOVED) {
+            groupAdapter.removeGroup(event.getGroup());
+        } else {
+            groupAdapter.addOrUpdateGroup(event.getGroup());
+        }
+        appliedSequence = event.getSequence();
+
+        // Entrance animations only for the first groups shown, not for later changes
+        if (isFirstLoad && groupAdapter.getItemCount() > 0) {
+            // end of a cold start: groups are on screen and usable
+            StartupTrace.mark(StartupTrace.INTERACTIVE);
+            reportFullyDrawn();
+            recyclerView.setLayoutAnimation(
+                    AnimationUtils.loadLayoutAnimation(GroupsActvity.this, R.anim.neon_layout_animation)
+            );
+            recyclerView.scheduleLayoutAnimation();
+            animateRecyclerViewEntrance();
+            isFirstLoad = false;
+        }
+    }
+
     private void animateHeaderEntrance() {
         View header = binding.imageView2;
         header.setTranslationY(-200f);
@@ -0,0 +1,84 @@
+package com.surajvanshsv.chatapp.views;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.graphics.Insets;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+
+import com.surajvanshsv.chatapp.R;
+import com.surajvanshsv.chatapp.Repository.Repository;
+
+import java.io.File;
+
+// Debug screen: listeners, snapshot sizes, decode times and emissions per group.
+// Only reachable in debuggable builds, see GroupsActvity.
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final long REFRESH_MS = 1000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private Repository repository;
+    private TextView report;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            report.setText(repository.getMetricsReport());
+            handler.postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_metrics);
+
+        repository = Repository.getInstance(this);
+        report = findViewById(R.id.metrics_report);
+
+        findViewById(R.id.metrics_reset).setOnClickListener(v -> {
+            repository.resetMetrics();
+            report.setText(repository.getMetricsReport());
+        });
+        findViewById(R.id.metrics_dump).setOnClickListener(v -> dump());
+
+        ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
+            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
+            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
+            return insets;
+        });
+    }
+
+    // app-private, pull it with: adb shell run-as <package> cat files/metrics-<time>.txt
+    private void dump() {
+        File file = new File(getFilesDir(), "metrics-" + System.currentTimeMillis() + ".txt");
+        repository.dumpMetrics(file, new Repository.MetricsDumpCallback() {
+            @Override
+            public void onDumped(File dumped) {
+                handler.post(() -> Toast.makeText(MetricsActivity.this,
+                        dumped != null ? "Saved " + dumped.getAbsolutePath() : "Could not save the metrics",
+                        Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refresh);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refresh);
+    }
+}
@@ -1,30 +1,52 @@
 package com.surajvanshsv.chatapp.views.adapters;
 
 import android.content.Context;
+import android.text.method.LinkMovementMethod;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.databinding.DataBindingUtil;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.surajvanshsv.chatapp.BR;
 import com.surajvanshsv.chatapp.R;
 import com.surajvanshsv.chatapp.databinding.RowChatBinding;
-import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.MessageRow;
 
 import java.util.List;
+import java.util.Objects;
+
+// One adapter lives as long as the screen. New lists are handed over with
+// submitList(), diffed on a background thread, and only the rows that
+// actually changed are rebound. Message texts come from MessageTextCache.
+public class ChatAdapter extends ListAdapter<MessageRow, ChatAdapter.MyViewHolder> {
+
+    private static final DiffUtil.ItemCallback<MessageRow> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<MessageRow>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull MessageRow oldItem, @NonNull MessageRow newItem) {
+                    return Objects.equals(oldItem.getKey(), newItem.getKey());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull MessageRow oldItem, @NonNull MessageRow newItem) {
+                    return oldItem.hasSameContent(newItem);
+                }
+            };
 
-public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MyViewHolder> {
-
-
-    private List<ChatMessage> chatMessageList;
     private Context context;
+    private final MessageTextCache textCache;
 
-    public ChatAdapter(List<ChatMessage> chatMessageList, Context context) {
-        this.chatMessageList = chatMessageList;
+    public ChatAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
+        this.textCache = MessageTextCache.getInstance(context);
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -39,22 +61,39 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MyViewHolder>
 
     @Override
     public void onBindViewHolder(@NonNull MyViewHolder holder, int position) {
-        holder.getBinding().setVariable(BR.chatMessage, chatMessageList.get(position));
+        MessageRow row = getItem(position);
+        holder.getBinding().setVariable(BR.messageRow, row);
         holder.getBinding().executePendingBindings();
+        // only the visible bubble
+        if (row.isMine()) {
+            textCache.bind(holder.getBinding().rightMessageText, holder.textParams, row);
+        } else {
+            textCache.bind(holder.getBinding().leftMessageText, holder.textParams, row);
+        }
+    }
+
+    // Parses and measures the texts of rows about to be shown
+    public void prefetchText(List<MessageRow> rows) {
+        textCache.prefetch(rows);
     }
 
     @Override
-    public int getItemCount() {
-        return chatMessageList.size();
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).getKey());
     }
 
 
     public class MyViewHolder extends RecyclerView.ViewHolder{
         private RowChatBinding binding;
+        // both bubbles have the same text style
+        private final PrecomputedTextCompat.Params textParams;
 
         public MyViewHolder( RowChatBinding binding) {
             super(binding.getRoot());
             setBinding(binding);
+            textParams = textCache.paramsOf(binding.leftMessageText);
+            binding.leftMessageText.setMovementMethod(LinkMovementMethod.getInstance());
+            binding.rightMessageText.setMovementMethod(LinkMovementMethod.getInstance());
         }
 
 
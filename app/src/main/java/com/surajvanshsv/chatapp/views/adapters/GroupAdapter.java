@@ -8,21 +8,131 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.databinding.DataBindingUtil;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.SortedList;
+import androidx.recyclerview.widget.SortedListAdapterCallback;
 
 import com.surajvanshsv.chatapp.R;
 import com.surajvanshsv.chatapp.databinding.ItemCardBinding;
 import com.surajvanshsv.chatapp.model.ChatGroup;
+import com.surajvanshsv.chatapp.search.GroupNameIndex;
 import com.surajvanshsv.chatapp.views.ChatActivity;
-//import com.surajvanshsv.chatapp.views.ChatActivity;
 
 import java.util.ArrayList;
-
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Groups are kept in a SortedList: each add, change or removal is a binary
+// search plus a single insert/move/remove notification, the list is never
+// re-sorted as a whole.
+// A name filter narrows the list to the groups starting with a prefix, the
+// matches come from a GroupNameIndex instead of checking every group.
 public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHolder> {
 
-    private ArrayList<ChatGroup> groupArrayList;
+    public enum SortOrder {
+        NAME,
+        // most recently active group first
+        LAST_ACTIVITY
+    }
 
-    public GroupAdapter(ArrayList<ChatGroup> groupArrayList) {
-        this.groupArrayList = groupArrayList;
+    private final SortedList<ChatGroup> groups;
+    // the instance currently in the sorted list for each name, needed to find
+    // it again once its sort key has changed
+    private final Map<String, ChatGroup> groupsByName = new HashMap<>();
+    // every known group, shown or filtered out
+    private final Map<String, ChatGroup> allGroups = new HashMap<>();
+    private final GroupNameIndex nameIndex = new GroupNameIndex();
+    private String filter = "";
+
+    public GroupAdapter(SortOrder sortOrder) {
+        setHasStableIds(true);
+        groups = new SortedList<>(ChatGroup.class, new SortedListAdapterCallback<ChatGroup>(this) {
+            @Override
+            public int compare(ChatGroup a, ChatGroup b) {
+                if (sortOrder == SortOrder.LAST_ACTIVITY) {
+                    int byActivity = Long.compare(b.getLastActivity(), a.getLastActivity());
+                    if (byActivity != 0) {
+                        return byActivity;
+                    }
+                }
+                return a.getGroupName().compareTo(b.getGroupName());
+            }
+
+            @Override
+            public boolean areContentsTheSame(ChatGroup oldItem, ChatGroup newItem) {
+                return oldItem.hasSameContent(newItem);
+            }
+
+            @Override
+            public boolean areItemsTheSame(ChatGroup item1, ChatGroup item2) {
+                return item1.getGroupName().equals(item2.getGroupName());
+            }
+        });
+    }
+
+    // adds the group, or updates (and if needed moves) it when already shown
+    public void addOrUpdateGroup(ChatGroup group) {
+        if (allGroups.put(group.getGroupName(), group) == null) {
+            nameIndex.add(group.getGroupName());
+        }
+        if (!GroupNameIndex.matches(group.getGroupName(), filter)) {
+            return;
+        }
+        ChatGroup current = groupsByName.put(group.getGroupName(), group);
+        if (current == null) {
+            groups.add(group);
+        } else {
+            groups.updateItemAt(groups.indexOf(current), group);
+        }
+    }
+
+    public void removeGroup(ChatGroup group) {
+        if (allGroups.remove(group.getGroupName()) != null) {
+            nameIndex.remove(group.getGroupName());
+        }
+        ChatGroup current = groupsByName.remove(group.getGroupName());
+        if (current != null) {
+            groups.remove(current);
+        }
+    }
+
+    // only for a full reload, SortedList works out the minimal changes
+    public void replaceAll(Collection<ChatGroup> newGroups) {
+        allGroups.clear();
+        for (ChatGroup group : newGroups) {
+            allGroups.put(group.getGroupName(), group);
+        }
+        nameIndex.replaceAll(allGroups.keySet());
+        showFiltered();
+    }
+
+    // shows only the groups whose name starts with the prefix, ignoring case
+    public void setFilter(String prefix) {
+        String newFilter = prefix == null ? "" : prefix.trim();
+        if (newFilter.equals(filter)) {
+            return;
+        }
+        filter = newFilter;
+        showFiltered();
+    }
+
+    private void showFiltered() {
+        List<ChatGroup> shown;
+        if (filter.isEmpty()) {
+            shown = new ArrayList<>(allGroups.values());
+        } else {
+            List<String> names = nameIndex.withPrefix(filter);
+            shown = new ArrayList<>(names.size());
+            for (String name : names) {
+                shown.add(allGroups.get(name));
+            }
+        }
+        groupsByName.clear();
+        for (ChatGroup group : shown) {
+            groupsByName.put(group.getGroupName(), group);
+        }
+        groups.replaceAll(shown);
     }
 
     @NonNull
@@ -44,14 +154,19 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
     public void onBindViewHolder(@NonNull GroupViewHolder holder, int position) {
         // binds data to an existing ViewHolder
         // Populates the Views in the ViewHolder with Data from the Dataset
-        ChatGroup currentUser = groupArrayList.get(position);
+        ChatGroup currentUser = groups.get(position);
         holder.itemCardBinding.setChatGroup(currentUser);
     }
 
     @Override
     public int getItemCount() {
 
-        return groupArrayList.size();
+        return groups.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return StableIds.of(groups.get(position).getGroupName());
     }
 
 
@@ -69,8 +184,11 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
                 @Override
                 public void onClick(View view) {
                     int position = getAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
 
-                    ChatGroup clickedChatGroup = groupArrayList.get(position);
+                    ChatGroup clickedChatGroup = groups.get(position);
 
                     Intent i = new Intent(view.getContext(), ChatActivity.class);
                     i.putExtra("GROUP_NAME", clickedChatGroup.getGroupName());
@@ -0,0 +1,193 @@
+package com.surajvanshsv.chatapp.views.adapters;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Process;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StyleSpan;
+import android.text.style.URLSpan;
+import android.util.LruCache;
+
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.content.ContextCompat;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import com.surajvanshsv.chatapp.R;
+import com.surajvanshsv.chatapp.model.MessageRow;
+import com.surajvanshsv.chatapp.text.RichTextParser;
+import com.surajvanshsv.chatapp.text.TextSpan;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// Message bubble texts, parsed for links, mentions and emoji and measured
+// (PrecomputedTextCompat) on a background thread, then kept by message key.
+// Binding a message seen before is one lookup and a setText that skips
+// measuring the glyphs again. On a miss the bubble gets the pending result
+// and only waits for it if it is measured before the work is done, which is
+// why ChatActivity prefetches new messages while the list is being diffed.
+// One cache for the process, so reopening a chat hits it too.
+public class MessageTextCache {
+
+    static final int MAX_ENTRIES = 500;
+    // emoji-only messages are shown this much bigger
+    static final float JUMBO_EMOJI_SCALE = 2f;
+
+    private static MessageTextCache instance;
+
+    private final LruCache<String, Entry> entries = new LruCache<>(MAX_ENTRIES);
+    // being built, so a prefetch and a bind never do the work twice
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "message-text"));
+    private final int linkColor;
+    private final int mentionColor;
+    // of the last bubble bound, both bubbles share one text style
+    private volatile PrecomputedTextCompat.Params lastParams;
+
+    private MessageTextCache(Context context) {
+        linkColor = ContextCompat.getColor(context, R.color.neon_cyan);
+        mentionColor = ContextCompat.getColor(context, R.color.neon_purple);
+    }
+
+    public static synchronized MessageTextCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MessageTextCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Text style of a bubble, once per view holder rather than per bind
+    public PrecomputedTextCompat.Params paramsOf(AppCompatTextView textView) {
+        PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(textView);
+        lastParams = params;
+        return params;
+    }
+
+    // main thread
+    public void bind(AppCompatTextView textView, PrecomputedTextCompat.Params params, MessageRow row) {
+        Entry entry = entries.get(row.getKey());
+        if (entry != null && entry.matches(row.getText(), params)) {
+            // a future of the row this view showed before must not win over this
+            textView.setTextFuture(null);
+            TextViewCompat.setPrecomputedText(textView, entry.text);
+            return;
+        }
+        textView.setTextFuture(build(row, params));
+    }
+
+    // Starts the work for rows that are about to be bound
+    public void prefetch(List<MessageRow> rows) {
+        PrecomputedTextCompat.Params params = lastParams;
+        if (params == null) {
+            // nothing bound yet, the style is not known
+            return;
+        }
+        for (MessageRow row : rows) {
+            Entry entry = entries.get(row.getKey());
+            if (entry == null || !entry.matches(row.getText(), params)) {
+                build(row, params);
+            }
+        }
+    }
+
+    private Future<PrecomputedTextCompat> build(MessageRow row, PrecomputedTextCompat.Params params) {
+        String key = row.getKey();
+        String text = row.getText() == null ? "" : row.getText();
+        Pending running = pending.get(key);
+        if (running != null && running.matches(text, params)) {
+            return running.task;
+        }
+        // an edited message or a new style is built again; the older work
+        // runs first on the one worker thread and its entry is replaced
+        Pending building = new Pending(text, params);
+        building.task = new FutureTask<>(new Callable<PrecomputedTextCompat>() {
+            @Override
+            public PrecomputedTextCompat call() {
+                try {
+                    PrecomputedTextCompat precomputed = PrecomputedTextCompat.create(style(text), params);
+                    entries.put(key, new Entry(text, params, precomputed));
+                    return precomputed;
+                } finally {
+                    pending.remove(key, building);
+                }
+            }
+        });
+        pending.put(key, building);
+        executor.execute(building.task);
+        return building.task;
+    }
+
+    // background thread
+    private Spannable style(String text) {
+        SpannableString styled = new SpannableString(text);
+        List<TextSpan> spans = RichTextParser.parse(text);
+        if (RichTextParser.isJumboEmoji(text, spans)) {
+            styled.setSpan(new RelativeSizeSpan(JUMBO_EMOJI_SCALE), 0, text.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            return styled;
+        }
+        for (TextSpan span : spans) {
+            int start = span.getStart();
+            int end = span.getEnd();
+            switch (span.getType()) {
+                case LINK:
+                    styled.setSpan(new URLSpan(span.getUrl()), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    styled.setSpan(new ForegroundColorSpan(linkColor), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    break;
+                case MENTION:
+                    styled.setSpan(new StyleSpan(Typeface.BOLD), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    styled.setSpan(new ForegroundColorSpan(mentionColor), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    break;
+                case EMOJI:
+                    // drawn by the font as they are, found so jumbo messages can be told apart
+                    break;
+            }
+        }
+        return styled;
+    }
+
+    private static final class Entry {
+        final String source;
+        final PrecomputedTextCompat.Params params;
+        final PrecomputedTextCompat text;
+
+        Entry(String source, PrecomputedTextCompat.Params params, PrecomputedTextCompat text) {
+            this.source = source;
+            this.params = params;
+            this.text = text;
+        }
+
+        // same text measured for the same style (font scale or theme may have changed)
+        boolean matches(String text, PrecomputedTextCompat.Params params) {
+            return source.equals(text == null ? "" : text) && this.params.equals(params);
+        }
+    }
+
+    private static final class Pending {
+        final String source;
+        final PrecomputedTextCompat.Params params;
+        FutureTask<PrecomputedTextCompat> task;
+
+        Pending(String source, PrecomputedTextCompat.Params params) {
+            this.source = source;
+            this.params = params;
+        }
+
+        boolean matches(String text, PrecomputedTextCompat.Params params) {
+            return source.equals(text) && this.params.equals(params);
+        }
+    }
+}
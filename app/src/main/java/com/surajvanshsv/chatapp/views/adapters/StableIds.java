@@ -0,0 +1,18 @@
+package com.surajvanshsv.chatapp.views.adapters;
+
+// Stable RecyclerView ids derived from string keys
+final class StableIds {
+
+    private StableIds() {
+    }
+
+    // 64-bit FNV-1a, collisions are practically impossible for push keys and group names
+    static long of(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,26 @@
+plugins {
+    id("java-library")
+    alias(libs.plugins.jmh)
+}
+
+// Platform-independent code of the app: models, time formatting, message
+// ordering, snapshot mapping and search. No Android or Firebase dependencies,
+// so it builds, tests and benchmarks on a plain JVM.
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+// ./gradlew :core:jmh, results in core/build/results/jmh
+jmh {
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // allocation rate next to throughput
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,82 @@
+package com.surajvanshsv.chatapp.benchmark;
+
+import com.surajvanshsv.chatapp.model.MessageEvent;
+import com.surajvanshsv.chatapp.model.MessageList;
+import com.surajvanshsv.chatapp.model.MessageRow;
+import com.surajvanshsv.chatapp.model.SnapshotCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Merging a fresh copy of a history into the one on screen, like the network
+// page landing on the cached page: most rows are unchanged, 1% were edited,
+// 1% are new. Counts the changes the adapter would be told about.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DiffBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    List<MessageRow> current;
+    List<MessageRow> fresh;
+
+    @Setup
+    public void setUp() {
+        List<Object> values = Histories.rawMessages(size, 2);
+        List<String> keys = Histories.keys(size + size / 100);
+        current = new ArrayList<>(size);
+        fresh = new ArrayList<>(size + size / 100);
+        for (int i = 0; i < size; i++) {
+            MessageRow row = MessageRow.from(SnapshotCodec.decodeMessage(keys.get(i), values.get(i)), "user7");
+            current.add(row);
+            if (i % 100 == 50) {
+                // edited
+                fresh.add(new MessageRow(row.getKey(), row.getSenderId(), row.getText() + " (edited)",
+                        row.getTime(), row.isMine(), row.getFormattedTime(), false));
+            } else {
+                fresh.add(row);
+            }
+        }
+        for (int i = size; i < keys.size(); i++) {
+            fresh.add(new MessageRow(keys.get(i), "user3", "new", Histories.START_TIME + i, false, "12:00", false));
+        }
+    }
+
+    @Benchmark
+    public int mergeByKey() {
+        MessageList list = new MessageList();
+        list.addFirst(current);
+        int changes = 0;
+        for (MessageRow row : fresh) {
+            MessageEvent.Type change = list.upsert(row);
+            if (change != null) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    // the per-item content check of the list adapter's diff callback
+    @Benchmark
+    public int compareContents() {
+        int changed = 0;
+        for (int i = 0; i < size; i++) {
+            if (!current.get(i).hasSameContent(fresh.get(i))) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,37 @@
+package com.surajvanshsv.chatapp.benchmark;
+
+import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.MessageRow;
+import com.surajvanshsv.chatapp.model.MessageTimeFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-message cost of the render model: time formatting and building the row
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatBenchmark {
+
+    long time = Histories.START_TIME;
+    final ChatMessage message = new ChatMessage("user7", "see you at the station", Histories.START_TIME);
+
+    @Benchmark
+    public String formatTime() {
+        time += 15_000L;
+        return MessageTimeFormat.format(time);
+    }
+
+    @Benchmark
+    public MessageRow buildRow() {
+        message.setTime(message.getTime() + 15_000L);
+        message.setKey(Histories.key((int) (message.getTime() & 0xffff)));
+        return MessageRow.from(message, "user7");
+    }
+}
@@ -0,0 +1,58 @@
+package com.surajvanshsv.chatapp.benchmark;
+
+import com.surajvanshsv.chatapp.search.GroupNameIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Group search as the user types: one prefix lookup per keystroke, and the
+// incremental adds the group stream makes. Both should stay well inside a frame.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GroupNameIndexBenchmark {
+
+    private static final String QUERY = "group a1";
+
+    @Param({"1000", "10000"})
+    int size;
+
+    GroupNameIndex index;
+    int added;
+
+    @Setup
+    public void setUp() {
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add("group " + Integer.toString(i * 7919, 36));
+        }
+        index = new GroupNameIndex();
+        index.replaceAll(names);
+    }
+
+    // every keystroke of the query
+    @Benchmark
+    public void typeQuery(Blackhole blackhole) {
+        for (int length = 1; length <= QUERY.length(); length++) {
+            blackhole.consume(index.withPrefix(QUERY.substring(0, length)));
+        }
+    }
+
+    @Benchmark
+    public boolean addAndRemove() {
+        String name = "new group " + (added++ % 100);
+        index.add(name);
+        return index.remove(name);
+    }
+}
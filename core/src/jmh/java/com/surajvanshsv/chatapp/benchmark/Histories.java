@@ -0,0 +1,60 @@
+package com.surajvanshsv.chatapp.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Synthetic message histories shaped like the database: raw value maps with
+// chronological push-key-like keys, a few dozen senders and chat-length texts
+final class Histories {
+
+    static final long START_TIME = 1_700_000_000_000L;
+
+    private static final String[] WORDS = {
+            "ok", "see", "you", "at", "the", "station", "lunch", "tomorrow", "meeting", "moved",
+            "to", "three", "haha", "sounds", "good", "where", "are", "we", "going", "tonight"
+    };
+
+    private Histories() {
+    }
+
+    static String key(int i) {
+        return String.format("-N%09d", i);
+    }
+
+    static List<String> keys(int size) {
+        List<String> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(key(i));
+        }
+        return keys;
+    }
+
+    // raw values as DataSnapshot.getValue() returns them
+    static List<Object> rawMessages(int size, long seed) {
+        Random random = new Random(seed);
+        List<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("senderId", "user" + random.nextInt(40));
+            value.put("text", text(random));
+            value.put("time", START_TIME + i * 15_000L);
+            values.add(value);
+        }
+        return values;
+    }
+
+    static String text(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = 2 + random.nextInt(12);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
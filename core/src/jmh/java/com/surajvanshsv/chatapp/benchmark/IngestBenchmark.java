@@ -0,0 +1,81 @@
+package com.surajvanshsv.chatapp.benchmark;
+
+import com.surajvanshsv.chatapp.model.ChatMessage;
+import com.surajvanshsv.chatapp.model.MessageList;
+import com.surajvanshsv.chatapp.model.MessageRow;
+import com.surajvanshsv.chatapp.model.SnapshotCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// What a stream does per message it receives: decode the raw value, build the
+// render row (ownership, formatted time) and place it in the key-ordered list.
+// decodeReflective is the baseline for decode.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IngestBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    List<Object> values;
+    List<String> keys;
+
+    @Setup
+    public void setUp() {
+        values = Histories.rawMessages(size, 1);
+        keys = Histories.keys(size);
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            blackhole.consume(SnapshotCodec.decodeMessage(keys.get(i), values.get(i)));
+        }
+    }
+
+    // the same histories through reflective bean mapping, what decode replaced
+    @Benchmark
+    public void decodeReflective(Blackhole blackhole) {
+        for (int i = 0; i < size; i++) {
+            ChatMessage message = ReflectiveBeanMapper.convert(values.get(i), ChatMessage.class);
+            message.setKey(keys.get(i));
+            blackhole.consume(message);
+        }
+    }
+
+    // children arrive in key order, as from the tail listener
+    @Benchmark
+    public MessageList ingestInOrder() {
+        MessageList list = new MessageList();
+        for (int i = 0; i < size; i++) {
+            ChatMessage message = SnapshotCodec.decodeMessage(keys.get(i), values.get(i));
+            list.upsert(MessageRow.from(message, "user7"));
+        }
+        return list;
+    }
+
+    // every child delivered twice (cached page, then network page)
+    @Benchmark
+    public MessageList ingestWithDuplicates() {
+        MessageList list = new MessageList();
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < size; i++) {
+                ChatMessage message = SnapshotCodec.decodeMessage(keys.get(i), values.get(i));
+                list.upsert(MessageRow.from(message, "user7"));
+            }
+        }
+        return list;
+    }
+}
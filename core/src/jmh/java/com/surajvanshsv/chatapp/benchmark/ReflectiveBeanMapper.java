@@ -0,0 +1,98 @@
+package com.surajvanshsv.chatapp.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The baseline SnapshotCodec replaced: raw values mapped onto a bean the way
+// DataSnapshot.getValue(Class) does it. Properties are found once per class
+// (public setters and fields, case-insensitive), then every value goes through
+// a reflective constructor, a property lookup per field, a conversion to the
+// declared type and a reflective set.
+final class ReflectiveBeanMapper<T> {
+
+    private static final Map<Class<?>, ReflectiveBeanMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private final Constructor<T> constructor;
+    private final Map<String, Method> setters = new HashMap<>();
+    private final Map<String, Field> fields = new HashMap<>();
+
+    private ReflectiveBeanMapper(Class<T> type) {
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type + " has no default constructor", e);
+        }
+        for (Method method : type.getMethods()) {
+            if (method.getName().startsWith("set") && method.getParameterCount() == 1
+                    && !Modifier.isStatic(method.getModifiers())) {
+                setters.put(property(method.getName().substring(3)), method);
+            }
+        }
+        for (Field field : type.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                fields.put(property(field.getName()), field);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T convert(Object value, Class<T> type) {
+        ReflectiveBeanMapper<T> mapper = (ReflectiveBeanMapper<T>)
+                MAPPERS.computeIfAbsent(type, ReflectiveBeanMapper::new);
+        return mapper.deserialize(value);
+    }
+
+    private T deserialize(Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        try {
+            T bean = constructor.newInstance();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String name = property(String.valueOf(entry.getKey()));
+                Method setter = setters.get(name);
+                if (setter != null) {
+                    setter.invoke(bean, coerce(entry.getValue(), setter.getParameterTypes()[0]));
+                    continue;
+                }
+                Field field = fields.get(name);
+                if (field != null) {
+                    field.set(bean, coerce(entry.getValue(), field.getType()));
+                }
+            }
+            return bean;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object coerce(Object value, Class<?> type) {
+        if (type == long.class || type == Long.class) {
+            return ((Number) value).longValue();
+        }
+        if (type == int.class || type == Integer.class) {
+            return ((Number) value).intValue();
+        }
+        if (type == double.class || type == Double.class) {
+            return ((Number) value).doubleValue();
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return value;
+        }
+        if (type == String.class) {
+            return (String) value;
+        }
+        return type.cast(value);
+    }
+
+    private static String property(String name) {
+        return name.toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,54 @@
+package com.surajvanshsv.chatapp.benchmark;
+
+import com.surajvanshsv.chatapp.search.MessageIndex;
+import com.surajvanshsv.chatapp.search.SearchHit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Query latency of the on-device message index at realistic sizes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"10000", "100000"})
+    int size;
+
+    MessageIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        index = new MessageIndex();
+        for (int i = 0; i < size; i++) {
+            index.add("group" + (i % 50), Histories.key(i), Histories.text(random) + " " + i,
+                    Histories.START_TIME + i);
+        }
+    }
+
+    @Benchmark
+    public List<SearchHit> word() {
+        return index.search("station", 50);
+    }
+
+    @Benchmark
+    public List<SearchHit> shortPrefix() {
+        return index.search("t", 50);
+    }
+
+    @Benchmark
+    public List<SearchHit> twoWords() {
+        return index.search("lunch tomo", 50);
+    }
+}
@@ -0,0 +1,90 @@
+package com.surajvanshsv.chatapp.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Counters and histograms of the data layer, per scope (a group name, or the
+// group directory). Recorded from the main thread and the background
+// executors, read by the debug screen and by dumps. Thread-safe.
+public final class DataMetrics {
+
+    // everything recorded for one scope
+    public static final class Scope {
+        long snapshots;
+        long emissions;
+        final Histogram children = new Histogram();
+        final Histogram payloadBytes = new Histogram();
+        final Histogram decodeMicros = new Histogram();
+        // from handing the snapshot to the ingestion thread to the result on the main thread
+        final Histogram ingestMicros = new Histogram();
+
+        public long getSnapshots() {
+            return snapshots;
+        }
+
+        public long getEmissions() {
+            return emissions;
+        }
+    }
+
+    private final Map<String, Scope> scopes = new TreeMap<>();
+    // tasks waiting on the ingestion thread, sampled at every submit
+    private final Histogram queueDepth = new Histogram();
+
+    // one delivered snapshot: how many children, roughly how many bytes, and how long decoding took
+    public synchronized void recordSnapshot(String scope, long children, long payloadBytes, long decodeNanos) {
+        Scope metrics = scope(scope);
+        metrics.snapshots++;
+        metrics.children.record(children);
+        metrics.payloadBytes.record(payloadBytes);
+        metrics.decodeMicros.record(decodeNanos / 1000);
+    }
+
+    // one value published to the UI
+    public synchronized void recordEmission(String scope) {
+        scope(scope).emissions++;
+    }
+
+    public synchronized void recordIngestion(String scope, long latencyNanos) {
+        scope(scope).ingestMicros.record(latencyNanos / 1000);
+    }
+
+    public synchronized void recordQueueDepth(int depth) {
+        queueDepth.record(depth);
+    }
+
+    public synchronized List<String> getScopes() {
+        return new ArrayList<>(scopes.keySet());
+    }
+
+    public synchronized void reset() {
+        scopes.clear();
+        queueDepth.clear();
+    }
+
+    private Scope scope(String name) {
+        Scope scope = scopes.get(name);
+        if (scope == null) {
+            scope = new Scope();
+            scopes.put(name, scope);
+        }
+        return scope;
+    }
+
+    // Plain text, one block per scope, for the debug screen and dump files
+    public synchronized void dump(StringBuilder out) {
+        out.append("queue depth       ").append(queueDepth).append("\n\n");
+        for (Map.Entry<String, Scope> entry : scopes.entrySet()) {
+            Scope scope = entry.getValue();
+            out.append('[').append(entry.getKey()).append("]\n")
+                    .append("  snapshots      ").append(scope.snapshots).append('\n')
+                    .append("  emissions      ").append(scope.emissions).append('\n')
+                    .append("  children       ").append(scope.children).append('\n')
+                    .append("  payload bytes  ").append(scope.payloadBytes).append('\n')
+                    .append("  decode us      ").append(scope.decodeMicros).append('\n')
+                    .append("  ingest us      ").append(scope.ingestMicros).append('\n');
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.surajvanshsv.chatapp.metrics;
+
+import java.util.Arrays;
+
+// Distribution of non-negative values in power-of-two buckets: bucket i holds
+// values below 2^i. Constant memory and O(1) per record, percentiles are
+// reported as the upper bound of their bucket. Not thread-safe, DataMetrics
+// guards it.
+public final class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    private static int bucketOf(long value) {
+        // 0 -> 0, 1 -> 1, 2..3 -> 2, 4..7 -> 3, ...
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // upper bound of the bucket holding the given percentile (0-100)
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, i == 0 ? 0 : (1L << i) - 1);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + count + " mean=" + Math.round(getMean()) + " p50=" + getPercentile(50)
+                + " p95=" + getPercentile(95) + " max=" + max;
+    }
+}
@@ -0,0 +1,99 @@
+package com.surajvanshsv.chatapp.model;
+
+import java.util.Objects;
+
+public class ChatGroup {
+
+    String groupName;
+    // last time anything happened in the group (creation until the first message)
+    long lastActivity;
+    // summary of the newest message, kept in the group directory by the sender
+    String lastMessage;
+    String lastSenderId;
+    long messageCount;
+    // messages this user has not read yet, worked out on the device
+    long unreadCount;
+
+    public ChatGroup(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public ChatGroup(String groupName, long lastActivity) {
+        this.groupName = groupName;
+        this.lastActivity = lastActivity;
+    }
+
+    public ChatGroup(String groupName, long lastActivity, String lastMessage, String lastSenderId, long messageCount) {
+        this.groupName = groupName;
+        this.lastActivity = lastActivity;
+        this.lastMessage = lastMessage;
+        this.lastSenderId = lastSenderId;
+        this.messageCount = messageCount;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public String getLastSenderId() {
+        return lastSenderId;
+    }
+
+    public void setLastSenderId(String lastSenderId) {
+        this.lastSenderId = lastSenderId;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public long getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public boolean hasSameContent(ChatGroup other) {
+        return lastActivity == other.lastActivity
+                && messageCount == other.messageCount
+                && unreadCount == other.unreadCount
+                && groupName.equals(other.groupName)
+                && Objects.equals(lastMessage, other.lastMessage)
+                && Objects.equals(lastSenderId, other.lastSenderId);
+    }
+
+    // rough size of the stored value: two bytes per char plus the numbers
+    public long estimateSizeBytes() {
+        return 2L * (length(groupName) + length(lastMessage) + length(lastSenderId)) + 16;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,84 @@
+package com.surajvanshsv.chatapp.model;
+
+import java.util.Map;
+
+// A message as stored under {groupName}/{pushKey}. Plain Java, the app reads
+// and writes it through SnapshotCodec.
+public class ChatMessage {
+
+
+    String key;
+    String senderId;
+    String text;
+    long time;
+
+    public ChatMessage(String senderId, String text, long time) {
+        this.senderId = senderId;
+        this.text = text;
+        this.time = time;
+
+    }
+
+
+    public ChatMessage() {
+    }
+
+
+    // push key of the message, not part of the stored value
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(String senderId) {
+        this.senderId = senderId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    // ownership is resolved once, when the message becomes a MessageRow
+    public boolean isFrom(String userId) {
+        return senderId != null && senderId.equals(userId);
+    }
+
+    // rough size of the stored value: two bytes per char plus the number
+    public long estimateSizeBytes() {
+        return 2L * (length(key) + length(senderId) + length(text)) + 8;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    // the fields that are stored in the database, for multi-path updates
+    public Map<String, Object> toMap() {
+        return SnapshotCodec.encodeMessage(this);
+    }
+
+    public String convertTime(){
+        return MessageTimeFormat.format(getTime());
+    }
+
+
+}
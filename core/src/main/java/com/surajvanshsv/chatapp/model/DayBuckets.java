@@ -0,0 +1,67 @@
+package com.surajvanshsv.chatapp.model;
+
+// Day buckets of the bucketed message layout, named yyyyMMdd (UTC) so that
+// their keys sort chronologically. The day comes from the push key itself:
+// its first 8 characters are the creation time in milliseconds, so key order
+// and bucket order always agree, whatever the message's own time field says.
+public final class DayBuckets {
+
+    // the alphabet of push keys, in sort order
+    private static final String PUSH_CHARS =
+            "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final int TIME_CHARS = 8;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private DayBuckets() {
+    }
+
+    // creation time encoded in a push key, -1 when it is not one
+    public static long timeOf(String pushKey) {
+        if (pushKey == null || pushKey.length() < TIME_CHARS) {
+            return -1;
+        }
+        long time = 0;
+        for (int i = 0; i < TIME_CHARS; i++) {
+            int digit = PUSH_CHARS.indexOf(pushKey.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            time = time * 64 + digit;
+        }
+        return time;
+    }
+
+    // bucket of a message, keys that are not push keys all land in the first day
+    public static String bucketOf(String pushKey) {
+        return bucketOfTime(Math.max(0, timeOf(pushKey)));
+    }
+
+    public static String bucketOfTime(long millis) {
+        long day = Math.floorDiv(millis, MILLIS_PER_DAY);
+
+        // days since 1970-01-01 to the civil date, proleptic Gregorian
+        day += 719468;
+        long era = Math.floorDiv(day, 146097);
+        long dayOfEra = day - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long dayOfMonth = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder bucket = new StringBuilder(8);
+        pad(bucket, year, 4);
+        pad(bucket, month, 2);
+        pad(bucket, dayOfMonth, 2);
+        return bucket.toString();
+    }
+
+    private static void pad(StringBuilder out, long value, int width) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            out.append('0');
+        }
+        out.append(digits);
+    }
+}
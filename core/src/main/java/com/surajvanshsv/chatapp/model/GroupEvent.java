@@ -0,0 +1,37 @@
+package com.surajvanshsv.chatapp.model;
+
+// A single change to the group directory
+public class GroupEvent {
+
+    public enum Type {
+        ADDED,
+        CHANGED,
+        REMOVED,
+        // many groups changed at once (e.g. the cached list was loaded), re-read them all
+        RESET
+    }
+
+    private final Type type;
+    private final ChatGroup group;
+    private final long sequence;
+
+    public GroupEvent(Type type, ChatGroup group, long sequence) {
+        this.type = type;
+        this.group = group;
+        this.sequence = sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // null for RESET
+    public ChatGroup getGroup() {
+        return group;
+    }
+
+    // increases by one for every event of a stream, so observers can detect missed events
+    public long getSequence() {
+        return sequence;
+    }
+}
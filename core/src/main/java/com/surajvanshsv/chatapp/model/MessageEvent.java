@@ -0,0 +1,51 @@
+package com.surajvanshsv.chatapp.model;
+
+// A single change to a group's message list, identified by the message push key
+public class MessageEvent {
+
+    public enum Type {
+        INSERTED,
+        UPDATED,
+        REMOVED,
+        // a range of older messages was loaded or dropped at getPosition()
+        PAGE_LOADED,
+        PAGE_DROPPED
+    }
+
+    private final Type type;
+    private final String key;
+    private final MessageRow message;
+    private final int position;
+    private final int count;
+
+    public MessageEvent(Type type, String key, MessageRow message, int position, int count) {
+        this.type = type;
+        this.key = key;
+        this.message = message;
+        this.position = position;
+        this.count = count;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public MessageRow getMessage() {
+        return message;
+    }
+
+    // index of the message in the stream's list after the change was applied
+    // (for REMOVED, the index it was removed from)
+    public int getPosition() {
+        return position;
+    }
+
+    // number of messages affected, only more than one for page events
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,85 @@
+package com.surajvanshsv.chatapp.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Messages of one group ordered by push key, which is chronological.
+// Lookups are binary searches, so a message arriving out of order, twice or
+// edited costs O(log n) to place. Not thread-safe.
+public class MessageList {
+
+    private final List<MessageRow> rows = new ArrayList<>();
+
+    public int size() {
+        return rows.size();
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    public MessageRow get(int position) {
+        return rows.get(position);
+    }
+
+    // read-only view, oldest first
+    public List<MessageRow> asList() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    // Places the row by its key: INSERTED, UPDATED when a row with the key was
+    // there with other content, or null when nothing changed
+    public MessageEvent.Type upsert(MessageRow row) {
+        int position = indexOf(row.getKey());
+        if (position >= 0) {
+            if (rows.get(position).hasSameContent(row)) {
+                return null;
+            }
+            rows.set(position, row);
+            return MessageEvent.Type.UPDATED;
+        }
+        rows.add(-(position + 1), row);
+        return MessageEvent.Type.INSERTED;
+    }
+
+    // a page that is older than everything held
+    public void addFirst(List<MessageRow> page) {
+        rows.addAll(0, page);
+    }
+
+    // a page that is newer than everything held
+    public void addLast(List<MessageRow> page) {
+        rows.addAll(page);
+    }
+
+    public void removeFirst(int count) {
+        rows.subList(0, count).clear();
+    }
+
+    public void removeLast(int count) {
+        rows.subList(rows.size() - count, rows.size()).clear();
+    }
+
+    public MessageRow remove(int position) {
+        return rows.remove(position);
+    }
+
+    // binary search by push key, returns (-(insertion point) - 1) when missing
+    public int indexOf(String key) {
+        int low = 0;
+        int high = rows.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = rows.get(mid).getKey().compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
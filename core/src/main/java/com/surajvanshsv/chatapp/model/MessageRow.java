@@ -0,0 +1,84 @@
+package com.surajvanshsv.chatapp.model;
+
+import java.util.Objects;
+
+// What a chat row shows, resolved once when the message is ingested:
+// ownership and formatted time are plain fields, so binding a row does no
+// auth lookups and no date formatting. Immutable, safe to share across threads.
+public final class MessageRow {
+
+    private final String key;
+    private final String senderId;
+    private final String text;
+    private final long time;
+    private final boolean mine;
+    private final String formattedTime;
+    // sent from this device and not yet confirmed by the server
+    private final boolean pending;
+
+    public MessageRow(String key, String senderId, String text, long time, boolean mine, String formattedTime,
+                      boolean pending) {
+        this.key = key;
+        this.senderId = senderId;
+        this.text = text;
+        this.time = time;
+        this.mine = mine;
+        this.formattedTime = formattedTime;
+        this.pending = pending;
+    }
+
+    public static MessageRow from(ChatMessage message, String currentUserId) {
+        return new MessageRow(
+                message.getKey(),
+                message.getSenderId(),
+                message.getText(),
+                message.getTime(),
+                message.isFrom(currentUserId),
+                MessageTimeFormat.format(message.getTime()),
+                false
+        );
+    }
+
+    public MessageRow withPending(boolean pending) {
+        if (pending == this.pending) {
+            return this;
+        }
+        return new MessageRow(key, senderId, text, time, mine, formattedTime, pending);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getSenderId() {
+        return senderId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public boolean isMine() {
+        return mine;
+    }
+
+    public String getFormattedTime() {
+        return formattedTime;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    public boolean hasSameContent(MessageRow other) {
+        return time == other.time
+                && mine == other.mine
+                && pending == other.pending
+                && Objects.equals(senderId, other.senderId)
+                && Objects.equals(text, other.text);
+    }
+}
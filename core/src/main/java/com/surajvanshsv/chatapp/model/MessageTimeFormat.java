@@ -0,0 +1,26 @@
+package com.surajvanshsv.chatapp.model;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+// Shared "HH:mm" formatter. SimpleDateFormat is not thread-safe, so each
+// thread gets its own instance instead of a new one per call.
+public final class MessageTimeFormat {
+
+    private static final ThreadLocal<SimpleDateFormat> FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("HH:mm");
+        }
+    };
+
+    private MessageTimeFormat() {
+    }
+
+    public static String format(long time) {
+        SimpleDateFormat sdf = FORMAT.get();
+        sdf.setTimeZone(TimeZone.getDefault());
+        return sdf.format(new Date(time));
+    }
+}
@@ -0,0 +1,25 @@
+package com.surajvanshsv.chatapp.model;
+
+// Who is in a group's chat right now, as counts
+public class Presence {
+
+    public static final Presence EMPTY = new Presence(0, 0);
+
+    private final int online;
+    private final int typing;
+
+    public Presence(int online, int typing) {
+        this.online = online;
+        this.typing = typing;
+    }
+
+    // members with the chat open, this user included
+    public int getOnline() {
+        return online;
+    }
+
+    // other members typing
+    public int getTyping() {
+        return typing;
+    }
+}
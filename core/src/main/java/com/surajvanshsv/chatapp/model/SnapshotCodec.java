@@ -0,0 +1,59 @@
+package com.surajvanshsv.chatapp.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Hand-written mapping between the models and the raw values of the database
+// (what DataSnapshot.getValue() returns: maps, strings, longs and doubles).
+// Unlike getValue(ChatMessage.class) it does no reflection and no bean
+// scanning. Unknown fields are ignored, missing or mistyped ones keep their
+// defaults, and a value that is not an object decodes to null.
+public final class SnapshotCodec {
+
+    private SnapshotCodec() {
+    }
+
+    public static ChatMessage decodeMessage(String key, Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        ChatMessage message = new ChatMessage(
+                string(fields.get("senderId")),
+                string(fields.get("text")),
+                number(fields.get("time"), 0L));
+        message.setKey(key);
+        return message;
+    }
+
+    public static Map<String, Object> encodeMessage(ChatMessage message) {
+        Map<String, Object> map = new HashMap<>(4);
+        map.put("senderId", message.getSenderId());
+        map.put("text", message.getText());
+        map.put("time", message.getTime());
+        return map;
+    }
+
+    // A directory entry, see GroupSummary. Entries written before the summary
+    // existed only have createdAt.
+    public static ChatGroup decodeGroup(String name, Object value) {
+        if (!(value instanceof Map)) {
+            return new ChatGroup(name, 0L);
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        long lastActivity = number(fields.get("lastActivity"), number(fields.get("createdAt"), 0L));
+        return new ChatGroup(name, lastActivity,
+                string(fields.get("lastMessage")),
+                string(fields.get("lastSenderId")),
+                number(fields.get("messageCount"), 0L));
+    }
+
+    private static String string(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    // the database hands back Long for whole numbers and Double otherwise
+    private static long number(Object value, long fallback) {
+        return value instanceof Number ? ((Number) value).longValue() : fallback;
+    }
+}
@@ -0,0 +1,134 @@
+package com.surajvanshsv.chatapp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+// Group names in a sorted array, case-insensitive, for filtering as you type.
+// A prefix is two binary searches away and its matches are one contiguous
+// slice, so a keystroke never walks the whole list. Adding or removing one
+// name shifts the array once. Plain Java, main thread only like its owner.
+public class GroupNameIndex {
+
+    // lowercased names, ascending, ties broken by the real name
+    private String[] keys = new String[16];
+    private String[] names = new String[16];
+    private int size;
+
+    public boolean add(String name) {
+        String key = normalize(name);
+        int position = find(key, name);
+        if (position >= 0) {
+            return false;
+        }
+        position = -(position + 1);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(names, position, names, position + 1, size - position);
+        keys[position] = key;
+        names[position] = name;
+        size++;
+        return true;
+    }
+
+    public boolean remove(String name) {
+        int position = find(normalize(name), name);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(names, position + 1, names, position, size - position - 1);
+        size--;
+        keys[size] = null;
+        names[size] = null;
+        return true;
+    }
+
+    // one sort instead of n inserts
+    public void replaceAll(Collection<String> newNames) {
+        String[] sorted = newNames.toArray(new String[0]);
+        Arrays.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int byKey = normalize(a).compareTo(normalize(b));
+                return byKey != 0 ? byKey : a.compareTo(b);
+            }
+        });
+        keys = new String[Math.max(16, sorted.length)];
+        names = new String[keys.length];
+        size = 0;
+        for (String name : sorted) {
+            if (size > 0 && names[size - 1].equals(name)) {
+                continue;
+            }
+            keys[size] = normalize(name);
+            names[size] = name;
+            size++;
+        }
+    }
+
+    // names starting with the prefix, ignoring case, in index order
+    public List<String> withPrefix(String prefix) {
+        String key = normalize(prefix);
+        int start = lowerBound(key);
+        List<String> matches = new ArrayList<>();
+        for (int i = start; i < size && keys[i].startsWith(key); i++) {
+            matches.add(names[i]);
+        }
+        return matches;
+    }
+
+    public static boolean matches(String name, String prefix) {
+        return normalize(name).startsWith(normalize(prefix));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // first position whose key is >= the given key
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // binary search, returns (-(insertion point) - 1) when missing
+    private int find(String key, String name) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[mid].compareTo(key);
+            if (cmp == 0) {
+                cmp = names[mid].compareTo(name);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
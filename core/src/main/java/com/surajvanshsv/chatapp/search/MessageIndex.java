@@ -0,0 +1,332 @@
+package com.surajvanshsv.chatapp.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Inverted index over message text, for searching every group on the device.
+// Each message is a document (an int id), each lowercased word a term, and
+// every term maps to the sorted ids of the documents containing it. Terms are
+// kept in a TreeMap so that a prefix is one sub-map range.
+// A query matches documents that contain every query word, the last word also
+// as a prefix (search-as-you-type). Hits are ranked by how rare the matched
+// terms are, exact words over prefixes, then newest first.
+// Only postings are kept, the message texts live in the LocalStore; a hash of
+// each text tells whether an update changed it.
+// Plain Java and not thread-safe, the owner confines it to one thread.
+public class MessageIndex {
+
+    private static final int FORMAT_VERSION = 2;
+    // longer "words" are pasted links or noise
+    static final int MAX_TERM_LENGTH = 32;
+    static final int MAX_QUERY_TERMS = 8;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    // "group/key" -> document id
+    private final Map<String, Integer> idsByMessage = new HashMap<>();
+    private final List<String> groupNames = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+    private long[] times = new long[64];
+    // hash of each document's text, to see whether an update changed it
+    private int[] textHashes = new int[64];
+    private final BitSet deleted = new BitSet();
+    private int liveCount;
+
+    // ids of the documents holding a term, ascending
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    // Adds the message, or re-indexes it when its text changed
+    public void add(String groupName, String key, String text, long time) {
+        String messageId = groupName + "/" + key;
+        Integer existing = idsByMessage.get(messageId);
+        if (existing != null) {
+            if (textHashes[existing] == hash(text)) {
+                return;
+            }
+            markDeleted(existing);
+        }
+
+        int id = keys.size();
+        groupNames.add(groupName);
+        keys.add(key);
+        if (id == times.length) {
+            times = Arrays.copyOf(times, id * 2);
+            textHashes = Arrays.copyOf(textHashes, id * 2);
+        }
+        times[id] = time;
+        textHashes[id] = hash(text);
+        idsByMessage.put(messageId, id);
+        liveCount++;
+
+        for (String term : tokenize(text)) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+            }
+            postings.add(id);
+        }
+    }
+
+    public void remove(String groupName, String key) {
+        Integer id = idsByMessage.remove(groupName + "/" + key);
+        if (id != null) {
+            markDeleted(id);
+        }
+    }
+
+    // Removed documents stay in the postings and are skipped, compact() drops them
+    private void markDeleted(int id) {
+        deleted.set(id);
+        liveCount--;
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    public int termCount() {
+        return terms.size();
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0 || liveCount == 0) {
+            return Collections.emptyList();
+        }
+        if (words.size() > MAX_QUERY_TERMS) {
+            words = words.subList(0, MAX_QUERY_TERMS);
+        }
+
+        int docCount = keys.size();
+        float[] scores = new float[docCount];
+        // bit i set = query word i matched the document
+        int[] matched = new int[docCount];
+        int last = words.size() - 1;
+
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            if (i < last) {
+                Postings postings = terms.get(word);
+                if (postings == null) {
+                    // every word has to match
+                    return Collections.emptyList();
+                }
+                score(postings, 2f, i, scores, matched);
+            } else {
+                NavigableMap<String, Postings> range = terms.subMap(word, true, word + Character.MAX_VALUE, false);
+                for (Map.Entry<String, Postings> term : range.entrySet()) {
+                    score(term.getValue(), term.getKey().length() == word.length() ? 2f : 1f, i, scores, matched);
+                }
+            }
+        }
+
+        // Top `limit` only: a short prefix can match most of the index, so no
+        // hit objects are made for documents that are not returned
+        int all = (1 << words.size()) - 1;
+        PriorityQueue<Integer> worstFirst = new PriorityQueue<>(limit + 1,
+                (x, y) -> -compareRank(x, y, scores));
+        for (int id = 0; id < docCount; id++) {
+            if (matched[id] != all || deleted.get(id)) {
+                continue;
+            }
+            if (worstFirst.size() < limit) {
+                worstFirst.add(id);
+            } else if (compareRank(id, worstFirst.peek(), scores) < 0) {
+                worstFirst.poll();
+                worstFirst.add(id);
+            }
+        }
+
+        List<SearchHit> hits = new ArrayList<>(worstFirst.size());
+        for (int id : worstFirst) {
+            hits.add(new SearchHit(groupNames.get(id), keys.get(id), times[id], scores[id]));
+        }
+        Collections.sort(hits, SearchHit.BY_RANK);
+        return hits;
+    }
+
+    // best score first, newest first among equals, like SearchHit.BY_RANK
+    private int compareRank(int a, int b, float[] scores) {
+        int byScore = Float.compare(scores[b], scores[a]);
+        if (byScore != 0) {
+            return byScore;
+        }
+        return Long.compare(times[b], times[a]);
+    }
+
+    private void score(Postings postings, float weight, int word, float[] scores, int[] matched) {
+        // rare terms say more about a message than common ones
+        float idf = (float) Math.log(1.0 + (double) keys.size() / postings.size);
+        int bit = 1 << word;
+        for (int i = 0; i < postings.size; i++) {
+            int id = postings.ids[i];
+            scores[id] += weight * idf;
+            matched[id] |= bit;
+        }
+    }
+
+    // Lowercased runs of letters and digits, each word once
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        Set<String> seen = new HashSet<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    String token = lower.substring(start, i);
+                    if (seen.add(token)) {
+                        tokens.add(token);
+                    }
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Drops the removed documents from the postings and renumbers the rest, ids change
+    public void compact() {
+        if (liveCount == keys.size()) {
+            return;
+        }
+        int[] newIds = new int[keys.size()];
+        int next = 0;
+        for (int id = 0; id < keys.size(); id++) {
+            if (deleted.get(id)) {
+                newIds[id] = -1;
+                continue;
+            }
+            newIds[id] = next;
+            groupNames.set(next, groupNames.get(id));
+            keys.set(next, keys.get(id));
+            times[next] = times[id];
+            textHashes[next] = textHashes[id];
+            next++;
+        }
+        groupNames.subList(next, groupNames.size()).clear();
+        keys.subList(next, keys.size()).clear();
+
+        idsByMessage.clear();
+        for (int id = 0; id < next; id++) {
+            idsByMessage.put(groupNames.get(id) + "/" + keys.get(id), id);
+        }
+
+        // renumbering keeps the order, so postings stay sorted
+        Iterator<Postings> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            int size = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int id = newIds[postings.ids[i]];
+                if (id >= 0) {
+                    postings.ids[size++] = id;
+                }
+            }
+            postings.size = size;
+            if (size == 0) {
+                iterator.remove();
+            }
+        }
+        deleted.clear();
+        liveCount = next;
+    }
+
+    // Documents first, then every term with its postings, removed documents are compacted away
+    public void writeTo(OutputStream stream) throws IOException {
+        compact();
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(keys.size());
+        for (int id = 0; id < keys.size(); id++) {
+            out.writeUTF(groupNames.get(id));
+            out.writeUTF(keys.get(id));
+            out.writeLong(times[id]);
+            out.writeInt(textHashes[id]);
+        }
+        out.writeInt(terms.size());
+        for (Map.Entry<String, Postings> term : terms.entrySet()) {
+            Postings postings = term.getValue();
+            out.writeUTF(term.getKey());
+            out.writeInt(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                out.writeInt(postings.ids[i]);
+            }
+        }
+        out.flush();
+    }
+
+    public static MessageIndex readFrom(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("unknown index format");
+        }
+        MessageIndex index = new MessageIndex();
+        int docCount = in.readInt();
+        index.times = new long[Math.max(64, docCount)];
+        index.textHashes = new int[index.times.length];
+        for (int id = 0; id < docCount; id++) {
+            String groupName = in.readUTF();
+            String key = in.readUTF();
+            index.groupNames.add(groupName);
+            index.keys.add(key);
+            index.times[id] = in.readLong();
+            index.textHashes[id] = in.readInt();
+            index.idsByMessage.put(groupName + "/" + key, id);
+        }
+        index.liveCount = docCount;
+
+        int termCount = in.readInt();
+        for (int t = 0; t < termCount; t++) {
+            String term = in.readUTF();
+            Postings postings = new Postings();
+            postings.size = in.readInt();
+            postings.ids = new int[Math.max(4, postings.size)];
+            for (int i = 0; i < postings.size; i++) {
+                postings.ids[i] = in.readInt();
+            }
+            index.terms.put(term, postings);
+        }
+        return index;
+    }
+
+    private static int hash(String text) {
+        return text == null ? 0 : text.hashCode();
+    }
+}
@@ -0,0 +1,47 @@
+package com.surajvanshsv.chatapp.search;
+
+import java.util.Comparator;
+
+// One message found by MessageIndex, enough to open the group at that message
+public final class SearchHit {
+
+    // best score first, newest first among equals
+    static final Comparator<SearchHit> BY_RANK = new Comparator<SearchHit>() {
+        @Override
+        public int compare(SearchHit a, SearchHit b) {
+            int byScore = Float.compare(b.score, a.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            return Long.compare(b.time, a.time);
+        }
+    };
+
+    private final String groupName;
+    private final String key;
+    private final long time;
+    private final float score;
+
+    public SearchHit(String groupName, String key, long time, float score) {
+        this.groupName = groupName;
+        this.key = key;
+        this.time = time;
+        this.score = score;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,153 @@
+package com.surajvanshsv.chatapp.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Finds the links, @mentions and emoji of a message text in one pass over it.
+// Pure text, no Android types, so it runs anywhere and is cheap to test;
+// the app turns the spans into styling off the main thread (MessageTextCache).
+public final class RichTextParser {
+
+    private static final int MAX_MENTION_LENGTH = 32;
+    // a message of at most this many emoji and nothing else is shown bigger
+    public static final int MAX_JUMBO_EMOJI = 3;
+
+    private static final int ZERO_WIDTH_JOINER = 0x200D;
+    private static final int VARIATION_SELECTOR = 0xFE0F;
+    private static final int KEYCAP = 0x20E3;
+
+    private RichTextParser() {
+    }
+
+    // spans in text order, never overlapping
+    public static List<TextSpan> parse(String text) {
+        List<TextSpan> spans = new ArrayList<>();
+        if (text == null) {
+            return spans;
+        }
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            int end;
+            if (startsLink(text, i) && (end = linkEnd(text, i)) > i) {
+                String target = text.substring(i, end);
+                spans.add(new TextSpan(TextSpan.Type.LINK, i, end,
+                        target.startsWith("www.") ? "https://" + target : target));
+                i = end;
+            } else if (text.charAt(i) == '@' && (i == 0 || !isWordChar(text.charAt(i - 1)))
+                    && (end = mentionEnd(text, i + 1)) > i + 1) {
+                spans.add(new TextSpan(TextSpan.Type.MENTION, i, end, null));
+                i = end;
+            } else if (isEmoji(text.codePointAt(i))) {
+                end = emojiEnd(text, i);
+                spans.add(new TextSpan(TextSpan.Type.EMOJI, i, end, null));
+                i = end;
+            } else {
+                i += Character.charCount(text.codePointAt(i));
+            }
+        }
+        return spans;
+    }
+
+    // Only emoji (and spaces), and few enough of them to show big
+    public static boolean isJumboEmoji(String text, List<TextSpan> spans) {
+        if (spans.isEmpty() || spans.size() > MAX_JUMBO_EMOJI) {
+            return false;
+        }
+        int covered = 0;
+        for (TextSpan span : spans) {
+            if (span.getType() != TextSpan.Type.EMOJI) {
+                return false;
+            }
+            covered += span.getEnd() - span.getStart();
+        }
+        return covered == text.trim().length() - spaces(text.trim());
+    }
+
+    private static int spaces(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean startsLink(String text, int i) {
+        if (i > 0 && isWordChar(text.charAt(i - 1))) {
+            return false;
+        }
+        return text.startsWith("https://", i) || text.startsWith("http://", i) || text.startsWith("www.", i);
+    }
+
+    // up to the next whitespace, without trailing punctuation
+    private static int linkEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+            end++;
+        }
+        while (end > start && ".,!?;:'\")]}".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        // a bare scheme is not a link
+        String target = text.substring(start, end);
+        if (target.equals("http://") || target.equals("https://") || target.equals("www.")) {
+            return start;
+        }
+        return end;
+    }
+
+    private static int mentionEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && end - start < MAX_MENTION_LENGTH && isWordChar(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    // An emoji with its modifiers, skin tones, and ZWJ sequences (families, flags) as one span
+    private static int emojiEnd(String text, int start) {
+        int first = text.codePointAt(start);
+        int i = start + Character.charCount(first);
+        if (isRegionalIndicator(first)) {
+            // a flag is exactly two of them
+            if (i < text.length() && isRegionalIndicator(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            return i;
+        }
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (codePoint == VARIATION_SELECTOR || codePoint == KEYCAP || isSkinTone(codePoint)) {
+                i += Character.charCount(codePoint);
+            } else if (codePoint == ZERO_WIDTH_JOINER && i + 1 < text.length()
+                    && isEmoji(text.codePointAt(i + 1))) {
+                i += 1 + Character.charCount(text.codePointAt(i + 1));
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    static boolean isEmoji(int codePoint) {
+        return (codePoint >= 0x1F300 && codePoint <= 0x1FAFF)
+                || (codePoint >= 0x2600 && codePoint <= 0x27BF)
+                || isRegionalIndicator(codePoint)
+                || codePoint == 0x2B50 || codePoint == 0x2B55
+                || codePoint == 0x203C || codePoint == 0x2049;
+    }
+
+    private static boolean isSkinTone(int codePoint) {
+        return codePoint >= 0x1F3FB && codePoint <= 0x1F3FF;
+    }
+
+    private static boolean isRegionalIndicator(int codePoint) {
+        return codePoint >= 0x1F1E6 && codePoint <= 0x1F1FF;
+    }
+}
@@ -0,0 +1,45 @@
+package com.surajvanshsv.chatapp.text;
+
+// A styled range of a message text, [start, end) in chars
+public final class TextSpan {
+
+    public enum Type {
+        LINK,
+        MENTION,
+        EMOJI
+    }
+
+    private final Type type;
+    private final int start;
+    private final int end;
+    // where a LINK points to, with a scheme; null for the other types
+    private final String url;
+
+    public TextSpan(Type type, int start, int end, String url) {
+        this.type = type;
+        this.start = start;
+        this.end = end;
+        this.url = url;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[" + start + "," + end + ")";
+    }
+}
@@ -0,0 +1,47 @@
+package com.surajvanshsv.chatapp.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Histogram buckets and the per-scope report.
+ */
+public class DataMetricsTest {
+
+    @Test
+    public void histogramReportsBucketUpperBounds() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        // 50 lies in 32..63, 95 in 64..127 which is capped at the max
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(95));
+        assertEquals(0, new Histogram().getPercentile(50));
+    }
+
+    @Test
+    public void keepsScopesApart() {
+        DataMetrics metrics = new DataMetrics();
+        metrics.recordSnapshot("cats", 30, 2_000, 150_000);
+        metrics.recordSnapshot("cats", 1, 60, 5_000);
+        metrics.recordEmission("cats");
+        metrics.recordEmission("groups");
+
+        assertEquals(Arrays.asList("cats", "groups"), metrics.getScopes());
+        StringBuilder report = new StringBuilder();
+        metrics.dump(report);
+        assertTrue(report.toString().contains("[cats]\n  snapshots      2\n  emissions      1\n"));
+
+        metrics.reset();
+        assertTrue(metrics.getScopes().isEmpty());
+    }
+}
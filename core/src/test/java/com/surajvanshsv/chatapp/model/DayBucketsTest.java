@@ -0,0 +1,42 @@
+package com.surajvanshsv.chatapp.model;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Push key times and the day buckets derived from them.
+ */
+public class DayBucketsTest {
+
+    @Test
+    public void decodesThePushKeyTime() {
+        // a push key created at 1700000000000
+        assertEquals(1_700_000_000_000L, DayBuckets.timeOf("-NjEtLV-abcdefghijkl"));
+        assertEquals(-1, DayBuckets.timeOf("short"));
+        assertEquals(-1, DayBuckets.timeOf("not a key!"));
+        assertEquals("19700101", DayBuckets.bucketOf("general"));
+    }
+
+    @Test
+    public void matchesTheCalendarInUtc() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        // every 7 hours over ~60 years, leap years and centuries included
+        for (long millis = 0; millis < 2_000_000_000_000L; millis += 7 * 3_600_000L) {
+            assertEquals(format.format(millis), DayBuckets.bucketOfTime(millis));
+        }
+        assertEquals("20000229", DayBuckets.bucketOfTime(951_782_400_000L));
+    }
+
+    @Test
+    public void bucketsSortLikeKeys() {
+        String earlier = DayBuckets.bucketOfTime(1_699_999_000_000L);
+        String later = DayBuckets.bucketOfTime(1_700_100_000_000L);
+        assertTrue(earlier.compareTo(later) < 0);
+    }
+}
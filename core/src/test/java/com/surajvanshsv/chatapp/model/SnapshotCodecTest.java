@@ -0,0 +1,55 @@
+package com.surajvanshsv.chatapp.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decoding raw DataSnapshot values into models. Decode time is measured by
+ * IngestBenchmark in the JMH suite.
+ */
+public class SnapshotCodecTest {
+
+    @Test
+    public void decodesEveryField() {
+        ChatMessage decoded = SnapshotCodec.decodeMessage("-M7", rawMessage(7));
+
+        assertEquals("-M7", decoded.getKey());
+        assertEquals("user7", decoded.getSenderId());
+        assertEquals("message number 7", decoded.getText());
+        assertEquals(1_700_000_000_007L, decoded.getTime());
+    }
+
+    @Test
+    public void toleratesUnknownMissingAndMistypedFields() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("text", "hi");
+        value.put("time", 12.0);
+        value.put("reactions", new HashMap<String, Object>());
+        value.put("senderId", 42L);
+
+        ChatMessage message = SnapshotCodec.decodeMessage("k", value);
+        assertEquals("hi", message.getText());
+        assertEquals(12L, message.getTime());
+        assertNull(message.getSenderId());
+        assertNull(SnapshotCodec.decodeMessage("k", "not an object"));
+
+        Map<String, Object> group = new HashMap<>();
+        group.put("createdAt", 5L);
+        ChatGroup chatGroup = SnapshotCodec.decodeGroup("g", group);
+        assertEquals(5L, chatGroup.getLastActivity());
+        assertEquals(0L, chatGroup.getMessageCount());
+        assertNull(chatGroup.getLastMessage());
+    }
+
+    private static Map<String, Object> rawMessage(int i) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("senderId", "user" + (i % 20));
+        value.put("text", "message number " + i);
+        value.put("time", 1_700_000_000_000L + i);
+        return value;
+    }
+}
@@ -0,0 +1,40 @@
+package com.surajvanshsv.chatapp.search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prefix filtering over group names. Its cost at 10k groups is measured by
+ * GroupNameIndexBenchmark in the JMH suite.
+ */
+public class GroupNameIndexTest {
+
+    @Test
+    public void findsPrefixIgnoringCase() {
+        GroupNameIndex index = new GroupNameIndex();
+        index.replaceAll(Arrays.asList("Cats", "cars", "Dogs", "catering"));
+        index.add("CATALOG");
+
+        assertEquals(Arrays.asList("CATALOG", "catering", "Cats"), index.withPrefix("cat"));
+        assertEquals(Arrays.asList("cars"), index.withPrefix("Car"));
+        assertTrue(index.withPrefix("x").isEmpty());
+        assertEquals(5, index.withPrefix("").size());
+    }
+
+    @Test
+    public void addAndRemoveKeepOrder() {
+        GroupNameIndex index = new GroupNameIndex();
+        assertTrue(index.add("b"));
+        assertTrue(index.add("a"));
+        assertFalse(index.add("a"));
+        assertTrue(index.add("c"));
+        assertTrue(index.remove("b"));
+        assertFalse(index.remove("b"));
+
+        assertEquals(Arrays.asList("a", "c"), index.withPrefix(""));
+        assertEquals(2, index.size());
+    }
+}
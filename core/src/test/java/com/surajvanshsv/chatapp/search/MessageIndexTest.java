@@ -0,0 +1,91 @@
+package com.surajvanshsv.chatapp.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Matching, ranking, updates and persistence of MessageIndex.
+ * Query latency is measured by SearchBenchmark in the JMH suite.
+ */
+public class MessageIndexTest {
+
+    @Test
+    public void matchesAllWordsAndPrefixOfTheLast() {
+        MessageIndex small = new MessageIndex();
+        small.add("friends", "a", "Lunch at noon?", 1);
+        small.add("friends", "b", "lunchtime is over", 2);
+        small.add("work", "c", "Team lunch tomorrow", 3);
+
+        List<SearchHit> hits = small.search("lunch", 10);
+        assertEquals(3, hits.size());
+        // exact word first, newest first among those
+        assertEquals("c", hits.get(0).getKey());
+        assertEquals("a", hits.get(1).getKey());
+        assertEquals("b", hits.get(2).getKey());
+
+        hits = small.search("team lun", 10);
+        assertEquals(1, hits.size());
+        assertEquals("work", hits.get(0).getGroupName());
+
+        assertTrue(small.search("dinner", 10).isEmpty());
+    }
+
+    @Test
+    public void removedAndEditedMessagesAreNotFound() {
+        MessageIndex small = new MessageIndex();
+        small.add("g", "a", "old text", 1);
+        small.add("g", "b", "old news", 2);
+        small.remove("g", "b");
+        small.add("g", "a", "new text", 1);
+
+        assertTrue(small.search("old", 10).isEmpty());
+        assertEquals(1, small.search("new", 10).size());
+        assertEquals(1, small.size());
+    }
+
+    @Test
+    public void survivesWriteAndRead() throws IOException {
+        MessageIndex small = new MessageIndex();
+        small.add("g", "a", "see you at the station", 1);
+        small.add("g", "b", "which station?", 2);
+        small.remove("g", "a");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        small.writeTo(out);
+        MessageIndex read = MessageIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        List<SearchHit> hits = read.search("stat", 10);
+        assertEquals(1, hits.size());
+        assertEquals("b", hits.get(0).getKey());
+        // still updatable after loading
+        read.add("g", "c", "station again", 3);
+        assertEquals(2, read.search("station", 10).size());
+    }
+
+    @Test
+    public void compactKeepsTheLiveDocuments() {
+        MessageIndex small = new MessageIndex();
+        small.add("g", "a", "first note", 1);
+        small.add("g", "b", "second note", 2);
+        small.add("g", "c", "third note", 3);
+        small.remove("g", "a");
+        small.add("g", "c", "third memo", 3);
+        small.compact();
+
+        assertEquals(2, small.size());
+        assertEquals(1, small.search("note", 10).size());
+        assertEquals("c", small.search("memo", 10).get(0).getKey());
+        assertTrue(small.search("first", 10).isEmpty());
+        // a removed term is gone from the dictionary too
+        small.remove("g", "b");
+        small.compact();
+        assertTrue(small.search("sec", 10).isEmpty());
+        assertEquals(2, small.termCount());
+    }
+}
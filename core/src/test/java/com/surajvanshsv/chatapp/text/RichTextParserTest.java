@@ -0,0 +1,58 @@
+package com.surajvanshsv.chatapp.text;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Links, mentions and emoji found in message texts.
+ */
+public class RichTextParserTest {
+
+    @Test
+    public void findsLinksWithoutTrailingPunctuation() {
+        String text = "see https://example.com/a?b=1, and www.test.org.";
+        List<TextSpan> spans = RichTextParser.parse(text);
+
+        assertEquals(2, spans.size());
+        assertEquals("https://example.com/a?b=1", text.substring(spans.get(0).getStart(), spans.get(0).getEnd()));
+        assertEquals("https://example.com/a?b=1", spans.get(0).getUrl());
+        assertEquals("www.test.org", text.substring(spans.get(1).getStart(), spans.get(1).getEnd()));
+        assertEquals("https://www.test.org", spans.get(1).getUrl());
+        assertTrue(RichTextParser.parse("nohttp://x and http:// alone").isEmpty());
+    }
+
+    @Test
+    public void findsMentionsButNotEmailAddresses() {
+        String text = "@anna hi, mail me at bob@example.com @_x";
+        List<TextSpan> spans = RichTextParser.parse(text);
+
+        assertEquals(2, spans.size());
+        assertEquals(TextSpan.Type.MENTION, spans.get(0).getType());
+        assertEquals("@anna", text.substring(spans.get(0).getStart(), spans.get(0).getEnd()));
+        assertEquals("@_x", text.substring(spans.get(1).getStart(), spans.get(1).getEnd()));
+        assertTrue(RichTextParser.parse("just @ alone").isEmpty());
+    }
+
+    @Test
+    public void keepsEmojiSequencesTogether() {
+        // thumbs up with skin tone, family (ZWJ sequence), flag
+        String thumbs = "\uD83D\uDC4D\uD83C\uDFFD";
+        String family = "\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67";
+        String flag = "\uD83C\uDDE9\uD83C\uDDEA";
+        String text = "ok " + thumbs + " " + family + flag;
+        List<TextSpan> spans = RichTextParser.parse(text);
+
+        assertEquals(TextSpan.Type.EMOJI, spans.get(0).getType());
+        assertEquals(thumbs, text.substring(spans.get(0).getStart(), spans.get(0).getEnd()));
+        assertEquals(family, text.substring(spans.get(1).getStart(), spans.get(1).getEnd()));
+        assertEquals(flag, text.substring(spans.get(2).getStart(), spans.get(2).getEnd()));
+        assertFalse(RichTextParser.isJumboEmoji(text, spans));
+
+        String jumbo = " " + thumbs + " \u2764\uFE0F ";
+        assertTrue(RichTextParser.isJumboEmoji(jumbo, RichTextParser.parse(jumbo)));
+        assertFalse(RichTextParser.isJumboEmoji("plain", RichTextParser.parse("plain")));
+    }
+}